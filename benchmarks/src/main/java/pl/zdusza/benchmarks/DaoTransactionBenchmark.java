@@ -0,0 +1,90 @@
+package pl.zdusza.benchmarks;
+
+import io.vertx.core.Future;
+import io.vertx.ext.sql.SQLConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.zdusza.Dao;
+import pl.zdusza.DaoOptions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cost of a whole {@link Dao#doInTransactionPLTZ} round trip: checkout, connection setup, the function, then
+ * commit and close, or rollback and close when the function fails.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DaoTransactionBenchmark {
+
+    private static final String RESULT = "result";
+
+    private static final RuntimeException FAILURE = new RuntimeException("failure", null, false, false);
+
+    @Param({"TRANSACTION", "SESSION", "PIPELINED"})
+    private String initialization;
+
+    @Param({"false", "true"})
+    private boolean metrics;
+
+    @Param({"0", "64"})
+    private int transactionPoolSize;
+
+    private Dao dao;
+
+    private Function<SQLConnection, Future<String>> succeeding;
+
+    private Function<SQLConnection, Future<String>> failing;
+
+    @Setup
+    public final void setUp() {
+        final DaoOptions options = new DaoOptions()
+                .setMetricsEnabled(metrics)
+                .setTransactionPoolSize(transactionPoolSize);
+        if ("PIPELINED".equals(initialization)) {
+            options.setPipelined(true);
+        } else {
+            options.setConnectionInitialization(DaoOptions.ConnectionInitialization.valueOf(initialization));
+        }
+        this.dao = new Dao(new StubSQLClient(), options);
+        this.succeeding = connection -> Future.succeededFuture(RESULT);
+        this.failing = connection -> Future.failedFuture(FAILURE);
+    }
+
+    @Benchmark
+    public final void commit(final Blackhole blackhole) {
+        final Future<String> future = Future.future();
+        dao.doInTransactionPLTZ(succeeding, future);
+        blackhole.consume(future.result());
+    }
+
+    @Benchmark
+    public final void rollback(final Blackhole blackhole) {
+        final Future<String> future = Future.future();
+        dao.doInTransactionPLTZ(failing, future);
+        blackhole.consume(future.cause());
+    }
+
+    @Benchmark
+    public final void updateInTransaction(final Blackhole blackhole) {
+        final Future<String> future = Future.future();
+        dao.doInTransactionPLTZ(connection -> dao.<String>doInTryCatch(result ->
+                connection.update(RESULT, dao.doInTryCatch(updateResult -> result.complete(RESULT), result))), future);
+        blackhole.consume(future.result());
+    }
+}
@@ -0,0 +1,69 @@
+package pl.zdusza.benchmarks;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.zdusza.Dao;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link Dao#doInTryCatch} wrappers on their own, without any connection handling.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DaoTryCatchBenchmark {
+
+    private static final String RESULT = "result";
+
+    private static final String QUERY = "SELECT 1";
+
+    private static final AsyncResult<String> SUCCEEDED = Future.succeededFuture(RESULT);
+
+    private Dao dao;
+
+    private JsonArray params;
+
+    @Setup
+    public final void setUp() {
+        this.dao = new Dao(new StubSQLClient());
+        this.params = new JsonArray().add(RESULT);
+    }
+
+    @Benchmark
+    public final void futureHandler(final Blackhole blackhole) {
+        blackhole.consume(dao.<String>doInTryCatch(future -> future.complete(RESULT)).result());
+    }
+
+    @Benchmark
+    public final void resultHandler(final Blackhole blackhole) {
+        final Future<String> future = Future.future();
+        final Handler<AsyncResult<String>> handler = dao.doInTryCatch(future::complete, future);
+        handler.handle(SUCCEEDED);
+        blackhole.consume(future.result());
+    }
+
+    @Benchmark
+    public final void resultHandlerWithQuery(final Blackhole blackhole) {
+        final Future<String> future = Future.future();
+        final Handler<AsyncResult<String>> handler = dao.doInTryCatch(future::complete, future, QUERY, params);
+        handler.handle(SUCCEEDED);
+        blackhole.consume(future.result());
+    }
+}
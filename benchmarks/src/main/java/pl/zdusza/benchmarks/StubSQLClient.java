@@ -0,0 +1,83 @@
+package pl.zdusza.benchmarks;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.UpdateResult;
+
+/**
+ * In-memory client handing out the same {@link StubSQLConnection} on every checkout.
+ */
+final class StubSQLClient implements SQLClient {
+
+    private final AsyncResult<SQLConnection> connection = Future.succeededFuture(new StubSQLConnection());
+
+    @Override
+    public SQLClient getConnection(final Handler<AsyncResult<SQLConnection>> handler) {
+        handler.handle(connection);
+        return this;
+    }
+
+    @Override
+    public void close(final Handler<AsyncResult<Void>> handler) {
+        handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public SQLClient query(final String sql, final Handler<AsyncResult<ResultSet>> handler) {
+        connection.result().query(sql, handler);
+        return this;
+    }
+
+    public SQLClient queryWithParams(final String sql,
+                                     final JsonArray arguments,
+                                     final Handler<AsyncResult<ResultSet>> handler) {
+        connection.result().queryWithParams(sql, arguments, handler);
+        return this;
+    }
+
+    public SQLClient queryStream(final String sql, final Handler<AsyncResult<SQLRowStream>> handler) {
+        connection.result().queryStream(sql, handler);
+        return this;
+    }
+
+    public SQLClient queryStreamWithParams(final String sql,
+                                           final JsonArray params,
+                                           final Handler<AsyncResult<SQLRowStream>> handler) {
+        connection.result().queryStreamWithParams(sql, params, handler);
+        return this;
+    }
+
+    public SQLClient update(final String sql, final Handler<AsyncResult<UpdateResult>> handler) {
+        connection.result().update(sql, handler);
+        return this;
+    }
+
+    public SQLClient updateWithParams(final String sql,
+                                      final JsonArray params,
+                                      final Handler<AsyncResult<UpdateResult>> handler) {
+        connection.result().updateWithParams(sql, params, handler);
+        return this;
+    }
+
+    public SQLClient call(final String sql, final Handler<AsyncResult<ResultSet>> handler) {
+        connection.result().call(sql, handler);
+        return this;
+    }
+
+    public SQLClient callWithParams(final String sql,
+                                    final JsonArray params,
+                                    final JsonArray outputs,
+                                    final Handler<AsyncResult<ResultSet>> handler) {
+        connection.result().callWithParams(sql, params, outputs, handler);
+        return this;
+    }
+}
@@ -0,0 +1,166 @@
+package pl.zdusza.benchmarks;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory connection completing every call synchronously with a shared result, so benchmarks measure only what
+ * the Dao itself costs per transaction.
+ */
+final class StubSQLConnection implements SQLConnection {
+
+    private static final AsyncResult<Void> VOID = Future.succeededFuture();
+
+    private static final AsyncResult<ResultSet> RESULT_SET = Future.succeededFuture(new ResultSet());
+
+    private static final AsyncResult<UpdateResult> UPDATE_RESULT = Future.succeededFuture(new UpdateResult());
+
+    private static final AsyncResult<List<Integer>> BATCH_RESULT = Future.succeededFuture(Collections.emptyList());
+
+    private static final AsyncResult<TransactionIsolation> ISOLATION =
+            Future.succeededFuture(TransactionIsolation.READ_COMMITTED);
+
+    @Override
+    public SQLConnection setAutoCommit(final boolean autoCommit, final Handler<AsyncResult<Void>> resultHandler) {
+        resultHandler.handle(VOID);
+        return this;
+    }
+
+    @Override
+    public SQLConnection execute(final String sql, final Handler<AsyncResult<Void>> resultHandler) {
+        resultHandler.handle(VOID);
+        return this;
+    }
+
+    @Override
+    public SQLConnection query(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+        resultHandler.handle(RESULT_SET);
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStream(final String sql, final Handler<AsyncResult<SQLRowStream>> handler) {
+        handler.handle(Future.failedFuture(new UnsupportedOperationException("queryStream")));
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryWithParams(final String sql,
+                                         final JsonArray params,
+                                         final Handler<AsyncResult<ResultSet>> resultHandler) {
+        resultHandler.handle(RESULT_SET);
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStreamWithParams(final String sql,
+                                               final JsonArray params,
+                                               final Handler<AsyncResult<SQLRowStream>> handler) {
+        handler.handle(Future.failedFuture(new UnsupportedOperationException("queryStreamWithParams")));
+        return this;
+    }
+
+    @Override
+    public SQLConnection update(final String sql, final Handler<AsyncResult<UpdateResult>> resultHandler) {
+        resultHandler.handle(UPDATE_RESULT);
+        return this;
+    }
+
+    @Override
+    public SQLConnection updateWithParams(final String sql,
+                                          final JsonArray params,
+                                          final Handler<AsyncResult<UpdateResult>> resultHandler) {
+        resultHandler.handle(UPDATE_RESULT);
+        return this;
+    }
+
+    @Override
+    public SQLConnection call(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+        resultHandler.handle(RESULT_SET);
+        return this;
+    }
+
+    @Override
+    public SQLConnection callWithParams(final String sql,
+                                        final JsonArray params,
+                                        final JsonArray outputs,
+                                        final Handler<AsyncResult<ResultSet>> resultHandler) {
+        resultHandler.handle(RESULT_SET);
+        return this;
+    }
+
+    @Override
+    public void close(final Handler<AsyncResult<Void>> handler) {
+        handler.handle(VOID);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public SQLConnection commit(final Handler<AsyncResult<Void>> handler) {
+        handler.handle(VOID);
+        return this;
+    }
+
+    @Override
+    public SQLConnection rollback(final Handler<AsyncResult<Void>> handler) {
+        handler.handle(VOID);
+        return this;
+    }
+
+    public SQLConnection setQueryTimeout(final int timeoutInSeconds) {
+        return this;
+    }
+
+    @Override
+    public SQLConnection batch(final List<String> sqlStatements, final Handler<AsyncResult<List<Integer>>> handler) {
+        handler.handle(BATCH_RESULT);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchWithParams(final String sqlStatement,
+                                         final List<JsonArray> args,
+                                         final Handler<AsyncResult<List<Integer>>> handler) {
+        handler.handle(BATCH_RESULT);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchCallableWithParams(final String sqlStatement,
+                                                 final List<JsonArray> inArgs,
+                                                 final List<JsonArray> outArgs,
+                                                 final Handler<AsyncResult<List<Integer>>> handler) {
+        handler.handle(BATCH_RESULT);
+        return this;
+    }
+
+    @Override
+    public SQLConnection setTransactionIsolation(final TransactionIsolation isolation,
+                                                 final Handler<AsyncResult<Void>> handler) {
+        handler.handle(VOID);
+        return this;
+    }
+
+    @Override
+    public SQLConnection getTransactionIsolation(final Handler<AsyncResult<TransactionIsolation>> handler) {
+        handler.handle(ISOLATION);
+        return this;
+    }
+
+    public <N> N unwrap() {
+        throw new UnsupportedOperationException("unwrap");
+    }
+}
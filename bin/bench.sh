@@ -0,0 +1,5 @@
+source ~/.jabba/jabba.sh 
+jabba use openjdk@1.10.0
+JAVA_TOOL_OPTIONS="-Duser.country=PL -Duser.language=pl -Duser.timezone=UTC" mvn clean install -DskipTests
+(cd benchmarks && mvn clean package)
+java -jar benchmarks/target/benchmarks.jar -prof gc -rf text -rff bench_output.txt "$@"
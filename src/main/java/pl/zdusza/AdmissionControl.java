@@ -0,0 +1,141 @@
+package pl.zdusza;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permits of an {@link AdmissionPolicy}. A queued transaction is admitted on the context it was started on once
+ * another one releases its permit. An adaptive limit shrinks at most once per latency window: slow transactions
+ * admitted before the last decrease do not shrink it again.
+ */
+final class AdmissionControl {
+
+    enum Admission {
+        ADMITTED,
+        QUEUED,
+        REJECTED
+    }
+
+    private final AdmissionPolicy policy;
+
+    private final DaoMetrics metrics;
+
+    private final long latencyTargetNanos;
+
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+    private int inFlight;
+
+    private double limit;
+
+    private boolean decreased;
+
+    private long decreasedNanos;
+
+    AdmissionControl(final AdmissionPolicy policy, final DaoMetrics metrics) {
+        if (policy.getMinInFlight() > policy.getMaxInFlight()) {
+            throw new IllegalArgumentException("Min in flight must not exceed max in flight");
+        }
+        this.policy = policy;
+        this.metrics = metrics;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(policy.getLatencyTarget());
+        this.limit = policy.getMaxInFlight();
+        metrics.admissionChanged(0, policy.getMaxInFlight());
+    }
+
+    /**
+     * Takes a permit for the transaction, or queues it to be admitted later by running the given callback.
+     */
+    Admission admit(final Runnable admitted) {
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return Admission.ADMITTED;
+            }
+            if (queue.size() < policy.getMaxQueued()) {
+                queue.add(new Waiter(admitted, Vertx.currentContext()));
+                metrics.admissionChanged(queue.size(), (int) limit);
+                return Admission.QUEUED;
+            }
+        }
+        metrics.increment(DaoMetrics.Counter.REJECTIONS);
+        return Admission.REJECTED;
+    }
+
+    /**
+     * Removes a transaction which gave up waiting, returns false when it was already admitted.
+     */
+    synchronized boolean remove(final Runnable admitted) {
+        final Iterator<Waiter> waiters = queue.iterator();
+        while (waiters.hasNext()) {
+            if (waiters.next().admitted == admitted) {
+                waiters.remove();
+                metrics.admissionChanged(queue.size(), (int) limit);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the permit of an admitted transaction which ran for the given time.
+     */
+    void release(final long latencyNanos, final boolean timedOut) {
+        final Waiter next;
+        synchronized (this) {
+            if (policy.isAdaptive()) {
+                this.adapt(latencyNanos, timedOut);
+            }
+            inFlight--;
+            next = inFlight < (int) limit ? queue.poll() : null;
+            if (next != null) {
+                inFlight++;
+            }
+            metrics.admissionChanged(queue.size(), (int) limit);
+        }
+        if (next != null) {
+            next.dispatch();
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    private void adapt(final long latencyNanos, final boolean timedOut) {
+        if (timedOut || latencyNanos > latencyTargetNanos) {
+            final long now = System.nanoTime();
+            if (!decreased || now - latencyNanos - decreasedNanos >= 0) {
+                this.limit = Math.max(policy.getMinInFlight(), limit * policy.getDecreaseFactor());
+                this.decreased = true;
+                this.decreasedNanos = now;
+            }
+        } else if (inFlight >= (int) limit) {
+            this.limit = Math.min(policy.getMaxInFlight(), limit + 1 / limit);
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Runnable admitted;
+
+        private final Context context;
+
+        private Waiter(final Runnable admitted, final Context context) {
+            this.admitted = admitted;
+            this.context = context;
+        }
+
+        private void dispatch() {
+            if (context == null) {
+                admitted.run();
+            } else {
+                context.runOnContext(v -> admitted.run());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package pl.zdusza;
+
+/**
+ * Limits transactions running at once. Transactions above the limit wait in a bounded queue in arrival order,
+ * transactions finding the queue full fail right away with {@link DaoOverloadedException}. An adaptive limit moves
+ * between minInFlight and maxInFlight by additive increase and multiplicative decrease: it grows by 1/limit for every
+ * transaction finishing within the latency target while the limit is used up, and shrinks by the decrease factor for
+ * every slower or timed out one.
+ */
+public final class AdmissionPolicy {
+
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    private static final int DEFAULT_MAX_QUEUED = 256;
+
+    private static final long DEFAULT_LATENCY_TARGET = 100;
+
+    private static final double DEFAULT_DECREASE_FACTOR = 0.9;
+
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+
+    private boolean adaptive;
+
+    private int minInFlight = 1;
+
+    private long latencyTarget = DEFAULT_LATENCY_TARGET;
+
+    private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Maximum number of transactions running at once, the starting point of an adaptive limit.
+     */
+    public AdmissionPolicy setMaxInFlight(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Max in flight must be positive");
+        }
+        this.maxInFlight = value;
+        return this;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Maximum number of transactions waiting for admission, 0 rejects as soon as the limit is reached.
+     */
+    public AdmissionPolicy setMaxQueued(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Max queued must not be negative");
+        }
+        this.maxQueued = value;
+        return this;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public AdmissionPolicy setAdaptive(final boolean value) {
+        this.adaptive = value;
+        return this;
+    }
+
+    public int getMinInFlight() {
+        return minInFlight;
+    }
+
+    /**
+     * Floor of an adaptive limit, must not exceed maxInFlight.
+     */
+    public AdmissionPolicy setMinInFlight(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Min in flight must be positive");
+        }
+        this.minInFlight = value;
+        return this;
+    }
+
+    public long getLatencyTarget() {
+        return latencyTarget;
+    }
+
+    /**
+     * Latency of admitted transactions in milliseconds above which an adaptive limit shrinks.
+     */
+    public AdmissionPolicy setLatencyTarget(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Latency target must be positive");
+        }
+        this.latencyTarget = value;
+        return this;
+    }
+
+    public double getDecreaseFactor() {
+        return decreaseFactor;
+    }
+
+    public AdmissionPolicy setDecreaseFactor(final double value) {
+        if (value <= 0 || value >= 1) {
+            throw new IllegalArgumentException("Decrease factor must be between 0 and 1");
+        }
+        this.decreaseFactor = value;
+        return this;
+    }
+}
@@ -0,0 +1,178 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.sql.SQLConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Coalesces transactions submitted within a time window, or until the batch size limit is reached, into a single
+ * {@link Dao#doInTransactionPLTZ(Function, Future)} call. Every function runs under its own savepoint, so it
+ * fails on its own without affecting the others; successful functions complete after the shared COMMIT. When the
+ * {@link RetryPolicy} of the {@link Dao} runs the batch again, functions that already failed are skipped.
+ */
+public class BatchingDao {
+
+    private static final String SAVEPOINT;
+
+    private static final String RELEASE_SAVEPOINT;
+
+    private static final String ROLLBACK_TO_SAVEPOINT;
+
+    static {
+        final ClassPathFileResolver classPathFileResolver = new ClassPathFileResolver();
+        SAVEPOINT = classPathFileResolver.textFile("/db/queries/Savepoint.sql");
+        RELEASE_SAVEPOINT = classPathFileResolver.textFile("/db/queries/ReleaseSavepoint.sql");
+        ROLLBACK_TO_SAVEPOINT = classPathFileResolver.textFile("/db/queries/RollbackToSavepoint.sql");
+    }
+
+    private final Vertx vertx;
+
+    private final Dao dao;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private List<Member<?>> pending = new ArrayList<>();
+
+    private long timerId = -1;
+
+    public BatchingDao(final Vertx vertx, final Dao dao, final long windowMillis, final int maxBatchSize) {
+        if (windowMillis < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch window and size must be positive");
+        }
+        this.vertx = vertx;
+        this.dao = dao;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public final <T> void doInTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
+                                              final Future<T> future) {
+        final List<Member<?>> batch;
+        synchronized (this) {
+            pending.add(new Member<>(function, future));
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else {
+                if (timerId == -1) {
+                    timerId = vertx.setTimer(windowMillis, this::flush);
+                }
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            this.execute(batch);
+        }
+    }
+
+    private void flush(final long firedTimerId) {
+        final List<Member<?>> batch;
+        synchronized (this) {
+            if (timerId != firedTimerId) {
+                return;
+            }
+            batch = takePending();
+        }
+        this.execute(batch);
+    }
+
+    private List<Member<?>> takePending() {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+        final List<Member<?>> batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        return batch;
+    }
+
+    private void execute(final List<Member<?>> batch) {
+        final Future<Void> transaction = Future.future();
+        dao.doInTransactionPLTZ(connection -> this.run(connection, batch, 0), transaction);
+        transaction.setHandler(transactionAsyncCall -> {
+            for (Member<?> member : batch) {
+                if (transactionAsyncCall.succeeded()) {
+                    member.complete();
+                } else {
+                    member.fail(transactionAsyncCall.cause());
+                }
+            }
+        });
+    }
+
+    private Future<Void> run(final SQLConnection connection, final List<Member<?>> batch, final int index) {
+        if (index == batch.size()) {
+            return Future.succeededFuture();
+        }
+        return batch.get(index).run(connection)
+                .compose(v -> this.run(connection, batch, index + 1));
+    }
+
+    private static Future<Void> executeStatement(final SQLConnection connection, final String sql) {
+        final Future<Void> future = Future.future();
+        try {
+            connection.execute(sql, future.completer());
+        } catch (Throwable t) {
+            future.fail(t);
+        }
+        return future;
+    }
+
+    private static final class Member<T> {
+
+        private final Function<SQLConnection, Future<T>> function;
+
+        private final Future<T> future;
+
+        private T result;
+
+        private Member(final Function<SQLConnection, Future<T>> function, final Future<T> future) {
+            this.function = function;
+            this.future = future;
+        }
+
+        private Future<Void> run(final SQLConnection connection) {
+            if (future.isComplete()) {
+                return Future.succeededFuture();
+            }
+            return executeStatement(connection, SAVEPOINT).compose(v -> {
+                final Future<Void> done = Future.future();
+                Future<T> functionResult;
+                try {
+                    functionResult = function.apply(connection);
+                } catch (Throwable t) {
+                    functionResult = Future.failedFuture(t);
+                }
+                functionResult.setHandler(functionAsyncCall -> {
+                    if (functionAsyncCall.succeeded()) {
+                        result = functionAsyncCall.result();
+                        executeStatement(connection, RELEASE_SAVEPOINT).setHandler(done.completer());
+                    } else {
+                        executeStatement(connection, ROLLBACK_TO_SAVEPOINT).setHandler(rollbackAsyncCall -> {
+                            if (rollbackAsyncCall.succeeded()) {
+                                future.tryFail(functionAsyncCall.cause());
+                                done.complete();
+                            } else {
+                                done.fail(rollbackAsyncCall.cause());
+                            }
+                        });
+                    }
+                });
+                return done;
+            });
+        }
+
+        private void complete() {
+            future.tryComplete(result);
+        }
+
+        private void fail(final Throwable cause) {
+            future.tryFail(cause);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package pl.zdusza;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.SQLConnection;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * A single COPY FROM STDIN through the CopyManager of the PostgreSQL JDBC connection of a transaction. Blocking driver
+ * calls run on worker threads, in order. Buffers of a ReadStream are written one at a time with the stream paused
+ * meanwhile, so no more than one buffer is held. A failed COPY is cancelled before failing the returned future.
+ */
+final class BulkCopy implements Handler<Buffer> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkCopy.class);
+
+    private final Vertx vertx;
+
+    private final String sql;
+
+    private final Future<CopyResult> result = Future.future();
+
+    private long started;
+
+    private CopyIn copyIn;
+
+    private ReadStream<Buffer> stream;
+
+    BulkCopy(final Vertx vertx, final String sql) {
+        this.vertx = vertx;
+        this.sql = sql;
+    }
+
+    /**
+     * The iterator is consumed on a worker thread.
+     */
+    Future<CopyResult> from(final SQLConnection connection, final Iterator<Buffer> data) {
+        this.started = System.nanoTime();
+        vertx.<CopyResult>executeBlocking(blocking -> {
+            try {
+                this.copyIn = copyManager(connection).copyIn(sql);
+                while (data.hasNext()) {
+                    write(copyIn, data.next());
+                }
+                blocking.complete(this.end());
+            } catch (SQLException | RuntimeException e) {
+                this.cancel();
+                blocking.fail(e);
+            }
+        }, true, result.completer());
+        return result;
+    }
+
+    Future<CopyResult> from(final SQLConnection connection, final ReadStream<Buffer> data) {
+        this.started = System.nanoTime();
+        this.stream = data;
+        vertx.<CopyIn>executeBlocking(blocking -> {
+            try {
+                blocking.complete(copyManager(connection).copyIn(sql));
+            } catch (SQLException | RuntimeException e) {
+                blocking.fail(e);
+            }
+        }, true, openAsyncCall -> {
+            if (openAsyncCall.failed()) {
+                result.tryFail(openAsyncCall.cause());
+                return;
+            }
+            this.copyIn = openAsyncCall.result();
+            data.exceptionHandler(this::failed);
+            data.endHandler(v -> this.ended());
+            data.handler(this);
+        });
+        return result;
+    }
+
+    @Override
+    public void handle(final Buffer buffer) {
+        if (result.isComplete()) {
+            return;
+        }
+        stream.pause();
+        vertx.<Void>executeBlocking(blocking -> {
+            try {
+                write(copyIn, buffer);
+                blocking.complete();
+            } catch (SQLException | RuntimeException e) {
+                blocking.fail(e);
+            }
+        }, true, writeAsyncCall -> {
+            if (writeAsyncCall.succeeded()) {
+                stream.resume();
+            } else {
+                this.failed(writeAsyncCall.cause());
+            }
+        });
+    }
+
+    private void ended() {
+        vertx.<CopyResult>executeBlocking(blocking -> {
+            try {
+                blocking.complete(this.end());
+            } catch (SQLException | RuntimeException e) {
+                this.cancel();
+                blocking.fail(e);
+            }
+        }, true, endAsyncCall -> {
+            if (endAsyncCall.succeeded()) {
+                result.tryComplete(endAsyncCall.result());
+            } else {
+                result.tryFail(endAsyncCall.cause());
+            }
+        });
+    }
+
+    private void failed(final Throwable t) {
+        if (result.isComplete()) {
+            return;
+        }
+        stream.pause();
+        vertx.<Void>executeBlocking(blocking -> {
+            this.cancel();
+            blocking.complete();
+        }, true, cancelAsyncCall -> result.tryFail(t));
+    }
+
+    private CopyResult end() throws SQLException {
+        return new CopyResult(copyIn.endCopy(), System.nanoTime() - started);
+    }
+
+    private void cancel() {
+        if (copyIn != null && copyIn.isActive()) {
+            try {
+                copyIn.cancelCopy();
+            } catch (SQLException e) {
+                LOGGER.error("Cancelling copy failed", e);
+            }
+        }
+    }
+
+    private static void write(final CopyIn copyIn, final Buffer buffer) throws SQLException {
+        final ByteBuf byteBuf = buffer.getByteBuf();
+        if (byteBuf.hasArray()) {
+            copyIn.writeToCopy(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+        } else {
+            final byte[] bytes = buffer.getBytes();
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+        }
+    }
+
+    private static CopyManager copyManager(final SQLConnection connection) throws SQLException {
+        final Object physical = ConnectionSessions.physical(connection);
+        if (!(physical instanceof PGConnection)) {
+            throw new IllegalStateException("COPY needs a PostgreSQL JDBC connection");
+        }
+        return ((PGConnection) physical).getCopyAPI();
+    }
+}
@@ -1,5 +1,7 @@
 package pl.zdusza;
 
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
@@ -7,8 +9,22 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Reads classpath resources. Bytes of resources in exploded directories are memory-mapped, resources in jars are
+ * read straight into direct buffers, JSON is decoded from those bytes without an intermediate String.
+ */
 public class ClassPathFileResolver {
 
     public final String textFile(final String path) {
@@ -24,10 +40,88 @@ public class ClassPathFileResolver {
     }
 
     public final JsonObject jsonObjectFile(final String path) {
-        return new JsonObject(this.textFile(path));
+        return this.decode(path, JsonObject::new);
     }
 
     public final JsonArray jsonArrayFile(final String path) {
-        return new JsonArray(this.textFile(path));
+        return this.decode(path, JsonArray::new);
+    }
+
+    /**
+     * Streams the objects of a JSON array resource one by one. The reader has to be closed unless read to the end.
+     */
+    public final JsonArrayReader jsonArrayReader(final String path) {
+        final InputStream inputStream = ClassPathFileResolver.class.getResourceAsStream(path);
+        if (inputStream == null) {
+            throw new RuntimeException("Missing file on project classpath: " + path);
+        }
+        try {
+            return new JsonArrayReader(path, inputStream);
+        } catch (IOException e) {
+            try {
+                inputStream.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw new RuntimeException("Unable to read file: " + path, e);
+        }
+    }
+
+    /**
+     * Returns the raw bytes of the resource as a read-only buffer, memory-mapped when the resource is a plain file.
+     */
+    public final ByteBuffer byteBuffer(final String path) {
+        return bytes(path).asReadOnlyBuffer();
+    }
+
+    private <T> T decode(final String path, final Function<Buffer, T> decoder) {
+        return decoder.apply(Buffer.buffer(Unpooled.wrappedBuffer(bytes(path))));
+    }
+
+    /**
+     * Maps a plain file resource, reads other resources of known length straight into a direct buffer.
+     */
+    private static ByteBuffer bytes(final String path) {
+        final URL url = resource(path);
+        try {
+            if (isFile(url)) {
+                return map(url);
+            }
+            final URLConnection connection = url.openConnection();
+            final long length = connection.getContentLengthLong();
+            try (InputStream inputStream = connection.getInputStream()) {
+                if (length < 0 || length > Integer.MAX_VALUE) {
+                    return ByteBuffer.wrap(inputStream.readAllBytes());
+                }
+                final ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+                final ReadableByteChannel channel = Channels.newChannel(inputStream);
+                int read = 0;
+                while (buffer.hasRemaining() && read >= 0) {
+                    read = channel.read(buffer);
+                }
+                buffer.flip();
+                return buffer;
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Unable to read file: " + path);
+        }
+    }
+
+    private static URL resource(final String path) {
+        final URL url = ClassPathFileResolver.class.getResource(path);
+        if (url == null) {
+            throw new RuntimeException("Missing file on project classpath: " + path);
+        }
+        return url;
+    }
+
+    private static boolean isFile(final URL url) {
+        return "file".equals(url.getProtocol());
+    }
+
+    private static ByteBuffer map(final URL url) throws IOException, URISyntaxException {
+        try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 }
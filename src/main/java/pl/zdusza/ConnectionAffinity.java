@@ -0,0 +1,136 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Closeable;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.sql.SQLConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connections of committed transactions kept in the local data of the Vert.x context they finished on, so the next
+ * transaction started on that context reuses an already initialized connection instead of checking one out of the
+ * shared pool. Every context keeps at most maxSize connections, each closed back to the pool after maxIdleMillis
+ * without being reused. The connections stay checked out of the pool meanwhile and are closed by a close hook of the
+ * context when it goes away, e.g. when its verticle is undeployed together with the idle timers.
+ */
+final class ConnectionAffinity {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionAffinity.class);
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final String key = ConnectionAffinity.class.getName() + "." + INSTANCES.incrementAndGet();
+
+    private final int maxSize;
+
+    private final long maxIdleMillis;
+
+    private final DaoMetrics metrics;
+
+    ConnectionAffinity(final int maxSize, final long maxIdleMillis, final DaoMetrics metrics) {
+        this.maxSize = maxSize;
+        this.maxIdleMillis = maxIdleMillis;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the most recently kept connection of the current context, null when there is none.
+     */
+    SQLConnection take() {
+        final Context context = Vertx.currentContext();
+        if (context == null) {
+            return null;
+        }
+        final ContextIdle idle = context.get(key);
+        if (idle == null || idle.connections.isEmpty()) {
+            return null;
+        }
+        final Idle last = idle.connections.pollLast();
+        context.owner().cancelTimer(last.timerId);
+        return last.connection;
+    }
+
+    /**
+     * Keeps the connection for the next transaction on the current context, returns false when it has to be closed.
+     */
+    boolean offer(final SQLConnection connection) {
+        final Context context = Vertx.currentContext();
+        if (context == null) {
+            return false;
+        }
+        ContextIdle idle = context.get(key);
+        if (idle == null) {
+            idle = new ContextIdle(context);
+            context.put(key, idle);
+            context.addCloseHook(idle);
+        }
+        if (idle.closed || idle.connections.size() >= maxSize) {
+            return false;
+        }
+        final ArrayDeque<Idle> connections = idle.connections;
+        final Idle kept = new Idle(connection);
+        kept.timerId = context.owner().setTimer(maxIdleMillis, id -> {
+            if (connections.remove(kept)) {
+                this.close(kept.connection);
+            }
+        });
+        connections.addLast(kept);
+        return true;
+    }
+
+    private void close(final SQLConnection connection) {
+        try {
+            connection.close(closeAsyncCall -> {
+                if (closeAsyncCall.failed()) {
+                    metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+                    LOGGER.error("Closing connection failed", closeAsyncCall.cause());
+                }
+            });
+        } catch (Exception e) {
+            metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+            LOGGER.error("Closing connection failed", e);
+        }
+    }
+
+    private final class ContextIdle implements Closeable {
+
+        private final Context context;
+
+        private final ArrayDeque<Idle> connections = new ArrayDeque<>(maxSize);
+
+        private boolean closed;
+
+        private ContextIdle(final Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void close(final Handler<AsyncResult<Void>> completionHandler) {
+            this.closed = true;
+            while (!connections.isEmpty()) {
+                final Idle idle = connections.pollFirst();
+                context.owner().cancelTimer(idle.timerId);
+                ConnectionAffinity.this.close(idle.connection);
+            }
+            completionHandler.handle(Future.succeededFuture());
+        }
+    }
+
+    private static final class Idle {
+
+        private final SQLConnection connection;
+
+        private long timerId;
+
+        private Idle(final SQLConnection connection) {
+            this.connection = connection;
+        }
+    }
+}
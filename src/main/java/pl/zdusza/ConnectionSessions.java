@@ -0,0 +1,149 @@
+package pl.zdusza;
+
+import io.vertx.ext.sql.SQLConnection;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per physical connection state. Pooled connections are recognised through {@link SQLConnection#unwrap()},
+ * clients which do not expose the underlying connection get a fresh, unidentified session on every checkout which
+ * never caches statements. Prepared statement names are unique across all sessions, so a fresh session of an already
+ * used backend never reuses a name.
+ */
+final class ConnectionSessions {
+
+    private final Map<Object, ConnectionSession> sessions = Collections.synchronizedMap(new WeakHashMap<>());
+
+    ConnectionSession of(final SQLConnection connection) {
+        return sessions.computeIfAbsent(physical(connection),
+                key -> new ConnectionSession(backendPid(key), key != connection));
+    }
+
+    static int backendPid(final Object physical) {
+        return physical instanceof PGConnection ? ((PGConnection) physical).getBackendPID() : 0;
+    }
+
+    static Object physical(final SQLConnection connection) {
+        final Object unwrapped;
+        try {
+            unwrapped = connection.unwrap();
+        } catch (UnsupportedOperationException e) {
+            return connection;
+        }
+        if (unwrapped == null) {
+            return connection;
+        }
+        if (unwrapped instanceof Connection) {
+            try {
+                return ((Connection) unwrapped).unwrap(PGConnection.class);
+            } catch (SQLException e) {
+                return unwrapped;
+            }
+        }
+        return unwrapped;
+    }
+
+    static final class ConnectionSession {
+
+        private static final AtomicLong STATEMENT_NAMES = new AtomicLong();
+
+        private static final int INITIAL_STATEMENTS_CAPACITY = 16;
+
+        private static final float STATEMENTS_LOAD_FACTOR = 0.75f;
+
+        private volatile boolean initialized;
+
+        private final Map<String, String> statements =
+                new LinkedHashMap<>(INITIAL_STATEMENTS_CAPACITY, STATEMENTS_LOAD_FACTOR, true);
+
+        private final Set<String> evicting = new HashSet<>();
+
+        private final boolean identified;
+
+        private volatile int backendPid;
+
+        ConnectionSession() {
+            this(0, true);
+        }
+
+        ConnectionSession(final int backendPid, final boolean identified) {
+            this.backendPid = backendPid;
+            this.identified = identified;
+        }
+
+        /**
+         * Whether the session is bound to the physical connection, only such sessions cache statements.
+         */
+        boolean isIdentified() {
+            return identified;
+        }
+
+        /**
+         * Process id of the backend serving the connection, 0 when not known yet.
+         */
+        int getBackendPid() {
+            return backendPid;
+        }
+
+        void setBackendPid(final int value) {
+            this.backendPid = value;
+        }
+
+        boolean isInitialized() {
+            return initialized;
+        }
+
+        void markInitialized() {
+            this.initialized = true;
+        }
+
+        synchronized String statement(final String sql) {
+            final String name = statements.get(sql);
+            return name == null || evicting.contains(name) ? null : name;
+        }
+
+        String nextStatementName() {
+            return "dao_stmt_" + STATEMENT_NAMES.incrementAndGet();
+        }
+
+        /**
+         * Picks the statement to deallocate along with a new one, it stays cached until the new one is put.
+         */
+        synchronized String evictionCandidate(final int maxSize) {
+            if (statements.size() - evicting.size() < maxSize) {
+                return null;
+            }
+            for (final String name : statements.values()) {
+                if (evicting.add(name)) {
+                    return name;
+                }
+            }
+            return null;
+        }
+
+        synchronized void putStatement(final String sql, final String name, final String evicted) {
+            if (evicted != null) {
+                evicting.remove(evicted);
+                statements.values().remove(evicted);
+            }
+            statements.put(sql, name);
+        }
+
+        synchronized void keepStatement(final String evicted) {
+            evicting.remove(evicted);
+        }
+
+        synchronized void removeStatement(final String sql) {
+            statements.remove(sql);
+        }
+    }
+}
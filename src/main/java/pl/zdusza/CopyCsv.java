@@ -0,0 +1,59 @@
+package pl.zdusza;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Encodes rows for COPY ... FROM STDIN (FORMAT csv): null values as unquoted empty fields, strings always quoted,
+ * numbers and booleans as they are. Rows are packed into buffers of about CHUNK_SIZE bytes, so a COPY sends few
+ * large messages instead of one per row.
+ */
+public final class CopyCsv implements Iterator<Buffer> {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Iterator<JsonArray> rows;
+
+    private CopyCsv(final Iterator<JsonArray> rows) {
+        this.rows = rows;
+    }
+
+    public static Iterator<Buffer> of(final Iterator<JsonArray> rows) {
+        return new CopyCsv(rows);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rows.hasNext();
+    }
+
+    @Override
+    public Buffer next() {
+        if (!rows.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final StringBuilder chunk = new StringBuilder();
+        while (rows.hasNext() && chunk.length() < CHUNK_SIZE) {
+            append(chunk, rows.next());
+        }
+        return Buffer.buffer(chunk.toString());
+    }
+
+    static StringBuilder append(final StringBuilder chunk, final JsonArray row) {
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) {
+                chunk.append(',');
+            }
+            final Object value = row.getValue(i);
+            if (value instanceof Number || value instanceof Boolean) {
+                chunk.append(value);
+            } else if (value != null) {
+                chunk.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+            }
+        }
+        return chunk.append('\n');
+    }
+}
@@ -0,0 +1,30 @@
+package pl.zdusza;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a COPY run by {@link Dao}: number of rows loaded and time spent from opening the COPY to its end.
+ */
+public final class CopyResult {
+
+    private final long rows;
+
+    private final long elapsedNanos;
+
+    CopyResult(final long rows, final long elapsedNanos) {
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos <= 0 ? 0 : (double) rows * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
@@ -0,0 +1,208 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows of a query read through a server side cursor declared in a {@link Dao} transaction. A chunk of fetchSize rows
+ * is fetched only once the previous one was handled and the stream is not paused, so at most one chunk is held in
+ * memory. The transaction commits when the cursor is exhausted, the end handler is called after the commit and the
+ * exception handler when any step or the transaction fails. Meant to be used on the context of the transaction.
+ */
+final class CursorStream implements ReadStream<JsonArray> {
+
+    private static final String DECLARE_CURSOR;
+
+    private static final String FETCH_FORWARD;
+
+    static {
+        final ClassPathFileResolver classPathFileResolver = new ClassPathFileResolver();
+        DECLARE_CURSOR = classPathFileResolver.textFile("/db/queries/DeclareCursor.sql");
+        FETCH_FORWARD = classPathFileResolver.textFile("/db/queries/FetchForward.sql");
+    }
+
+    private final String declare;
+
+    private final JsonArray params;
+
+    private final String fetch;
+
+    private final int fetchSize;
+
+    private SQLConnection connection;
+
+    private Future<Void> cursor;
+
+    private List<JsonArray> chunk = Collections.emptyList();
+
+    private int position;
+
+    private boolean fetching;
+
+    private boolean exhausted;
+
+    private boolean paused;
+
+    private boolean draining;
+
+    private boolean committed;
+
+    private boolean ended;
+
+    private Throwable failure;
+
+    private Handler<JsonArray> handler;
+
+    private Handler<Throwable> exceptionHandler;
+
+    private Handler<Void> endHandler;
+
+    CursorStream(final String sql, final JsonArray params, final int fetchSize) {
+        this.declare = DECLARE_CURSOR + " " + sql;
+        this.params = params;
+        this.fetch = String.format(FETCH_FORWARD, fetchSize);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * The function of the transaction, its future completes once every row was fetched.
+     */
+    Future<Void> open(final SQLConnection transactionConnection) {
+        this.connection = transactionConnection;
+        this.cursor = Future.future();
+        if (params == null || params.isEmpty()) {
+            connection.execute(declare, this::declared);
+        } else {
+            connection.updateWithParams(declare, params, this::declared);
+        }
+        return cursor;
+    }
+
+    /**
+     * Outcome of the transaction.
+     */
+    void finished(final AsyncResult<Void> transactionAsyncCall) {
+        if (transactionAsyncCall.succeeded()) {
+            this.committed = true;
+            this.end();
+        } else {
+            this.fail(transactionAsyncCall.cause());
+        }
+    }
+
+    @Override
+    public ReadStream<JsonArray> exceptionHandler(final Handler<Throwable> value) {
+        this.exceptionHandler = value;
+        if (failure != null && !ended) {
+            this.fail(failure);
+        }
+        return this;
+    }
+
+    @Override
+    public ReadStream<JsonArray> handler(final Handler<JsonArray> value) {
+        this.handler = value;
+        this.drain();
+        return this;
+    }
+
+    @Override
+    public ReadStream<JsonArray> pause() {
+        this.paused = true;
+        return this;
+    }
+
+    @Override
+    public ReadStream<JsonArray> resume() {
+        this.paused = false;
+        this.drain();
+        return this;
+    }
+
+    @Override
+    public ReadStream<JsonArray> endHandler(final Handler<Void> value) {
+        this.endHandler = value;
+        this.end();
+        return this;
+    }
+
+    private void declared(final AsyncResult<?> declareAsyncCall) {
+        if (declareAsyncCall.succeeded()) {
+            this.drain();
+        } else {
+            cursor.tryFail(declareAsyncCall.cause());
+        }
+    }
+
+    private void fetched(final AsyncResult<ResultSet> fetchAsyncCall) {
+        this.fetching = false;
+        if (fetchAsyncCall.succeeded()) {
+            this.chunk = fetchAsyncCall.result().getResults();
+            this.position = 0;
+            this.exhausted = chunk.size() < fetchSize;
+            this.drain();
+        } else {
+            cursor.tryFail(fetchAsyncCall.cause());
+        }
+    }
+
+    private void drain() {
+        if (draining || failure != null || cursor == null) {
+            return;
+        }
+        this.draining = true;
+        try {
+            while (!paused && handler != null && position < chunk.size()) {
+                handler.handle(chunk.get(position++));
+            }
+        } catch (Throwable t) {
+            cursor.tryFail(t);
+            return;
+        } finally {
+            this.draining = false;
+        }
+        if (position < chunk.size()) {
+            return;
+        }
+        this.chunk = Collections.emptyList();
+        this.position = 0;
+        if (exhausted) {
+            cursor.tryComplete();
+        } else if (!fetching && !paused && handler != null) {
+            this.fetching = true;
+            try {
+                connection.query(fetch, this::fetched);
+            } catch (Throwable t) {
+                this.fetching = false;
+                cursor.tryFail(t);
+            }
+        }
+    }
+
+    private void end() {
+        if (committed && !ended && endHandler != null) {
+            this.ended = true;
+            endHandler.handle(null);
+        }
+    }
+
+    private void fail(final Throwable t) {
+        this.failure = t;
+        this.chunk = Collections.emptyList();
+        if (cursor != null) {
+            cursor.tryFail(t);
+        }
+        if (!ended && exceptionHandler != null) {
+            this.ended = true;
+            exceptionHandler.handle(t);
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package pl.zdusza;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLClient;
 import io.vertx.ext.sql.SQLConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class Dao {
@@ -18,42 +29,149 @@ public class Dao {
 
     private static final String SET_TIMEZONE;
 
+    private static final String SET_SESSION_TIMEZONE;
+
+    private static final String BEGIN;
+
+    private static final String COMMIT;
+
+    private static final String ROLLBACK;
+
+    private static final String BEGIN_READ_ONLY;
+
+    private static final String BACKEND_PID;
+
+    private static final String CANCEL_BACKEND;
+
+    private static final String BEGIN_WITH_TIMEZONE;
+
+    private static final String BEGIN_READ_ONLY_WITH_TIMEZONE;
+
     static {
-        SET_TIMEZONE = new ClassPathFileResolver().textFile("/db/queries/SetTimezone.sql");
+        final ClassPathFileResolver classPathFileResolver = new ClassPathFileResolver();
+        SET_TIMEZONE = classPathFileResolver.textFile("/db/queries/SetTimezone.sql");
+        SET_SESSION_TIMEZONE = classPathFileResolver.textFile("/db/queries/SetSessionTimezone.sql");
+        BEGIN = classPathFileResolver.textFile("/db/queries/Begin.sql");
+        COMMIT = classPathFileResolver.textFile("/db/queries/Commit.sql");
+        ROLLBACK = classPathFileResolver.textFile("/db/queries/Rollback.sql");
+        BEGIN_READ_ONLY = classPathFileResolver.textFile("/db/queries/BeginReadOnly.sql");
+        BACKEND_PID = classPathFileResolver.textFile("/db/queries/BackendPid.sql");
+        CANCEL_BACKEND = classPathFileResolver.textFile("/db/queries/CancelBackend.sql");
+        BEGIN_WITH_TIMEZONE = BEGIN + " " + SET_TIMEZONE;
+        BEGIN_READ_ONLY_WITH_TIMEZONE = BEGIN_READ_ONLY + " " + SET_TIMEZONE;
     }
 
+    private static final long NO_TIMER = -1;
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final String scopeKey = Dao.class.getName() + "." + INSTANCES.incrementAndGet();
+
+    private final Vertx vertx;
+
     private SQLClient sqlClient;
 
+    private final SQLClient cancelClient;
+
+    private final AtomicReference<SQLConnection> cancelConnection = new AtomicReference<>();
+
+    private final DaoOptions options;
+
+    private final ConnectionSessions sessions = new ConnectionSessions();
+
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+
+    private final ReplicaRouter readRouter;
+
+    private final DaoMetrics metrics;
+
+    private final AdmissionControl admission;
+
+    private final ConnectionAffinity affinity;
+
+    private final Transaction<?>[] transactionPool;
+
+    private int pooledTransactions;
+
     public Dao(final SQLClient sqlClient) {
-        this.sqlClient = sqlClient;
+        this(sqlClient, new DaoOptions());
     }
 
-    private Future<SQLConnection> getConnectionFromPoolWithoutACAndInTZ() {
-        Future<SQLConnection> futureConnection = Future.future();
-        try {
-            sqlClient.getConnection(getConnectionAsyncCall -> {
-                if (getConnectionAsyncCall.succeeded()) {
-                    this.setAutoCommitFalse(getConnectionAsyncCall.result())
-                            .setHandler(futureConnection.completer());
-                } else {
-                    futureConnection.fail(getConnectionAsyncCall.cause());
-                }
-            });
-        } catch (Throwable t) {
-            futureConnection.fail(t);
-        }
-        return futureConnection;
+    public Dao(final SQLClient sqlClient, final DaoOptions options) {
+        this(null, sqlClient, Collections.emptyList(), options);
+    }
+
+    public Dao(final SQLClient sqlClient, final List<SQLClient> readReplicas, final DaoOptions options) {
+        this(null, sqlClient, readReplicas, options);
     }
 
-    private Future<SQLConnection> setAutoCommitFalse(final SQLConnection connection) {
-        Future<SQLConnection> future = Future.future();
+    public Dao(final Vertx vertx, final SQLClient sqlClient, final DaoOptions options) {
+        this(vertx, sqlClient, Collections.emptyList(), options);
+    }
+
+    /**
+     * The Vertx instance runs transaction deadlines and retry backoff, without it they use the Vertx of the calling
+     * context.
+     */
+    public Dao(final Vertx vertx,
+               final SQLClient sqlClient,
+               final List<SQLClient> readReplicas,
+               final DaoOptions options) {
+        this(vertx, sqlClient, readReplicas, null, options);
+    }
+
+    /**
+     * Queries running past a transaction deadline are cancelled over a single connection of the cancel client kept
+     * for that purpose, so cancelling works while the pool of sqlClient is exhausted. The cancel client should be a
+     * separate pool of one connection. Without it transactions past their deadline are still rolled back and closed,
+     * but a running query is not cancelled.
+     */
+    public Dao(final Vertx vertx,
+               final SQLClient sqlClient,
+               final List<SQLClient> readReplicas,
+               final SQLClient cancelClient,
+               final DaoOptions options) {
+        this.vertx = vertx;
+        this.sqlClient = sqlClient;
+        this.cancelClient = cancelClient;
+        this.options = options;
+        this.metrics = new DaoMetrics(options.isMetricsEnabled());
+        this.transactionPool = new Transaction<?>[options.getTransactionPoolSize()];
+        this.admission = options.getAdmissionPolicy() == null
+                ? null
+                : new AdmissionControl(options.getAdmissionPolicy(), metrics);
+        this.affinity = options.getConnectionAffinitySize() == 0
+                ? null
+                : new ConnectionAffinity(options.getConnectionAffinitySize(),
+                        options.getConnectionAffinityIdleTimeout(), metrics);
+        this.readRouter = readReplicas.isEmpty()
+                ? null
+                : new ReplicaRouter(readReplicas, options.getReplicaSelection());
+    }
+
+    /**
+     * Starts the transaction with the time zone set in the same round trip. In SESSION mode a connection not
+     * initialized yet gets the session time zone in an autocommitted statement of its own first, a SET sent within
+     * the transaction block would be undone by its rollback.
+     */
+    private Future<SQLConnection> beginInSingleStatement(final SQLConnection connection, final String beginStatement) {
+        if (options.getConnectionInitialization() != DaoOptions.ConnectionInitialization.SESSION) {
+            return this.begin(connection, beginStatement + " " + SET_TIMEZONE);
+        }
+        final ConnectionSessions.ConnectionSession session = sessions.of(connection);
+        if (session.isInitialized()) {
+            return this.begin(connection, beginStatement);
+        }
+        final Future<SQLConnection> future = Future.future();
+        final long started = metrics.start();
         try {
-            connection.setAutoCommit(false, setAutoCommitAsyncCall -> {
-                if (setAutoCommitAsyncCall.succeeded()) {
-                    setTimezone(connection)
-                            .setHandler(future.completer());
+            connection.execute(SET_SESSION_TIMEZONE, setAsyncCall -> {
+                metrics.record(DaoMetrics.Phase.SET_TIMEZONE, started);
+                if (setAsyncCall.succeeded()) {
+                    session.markInitialized();
+                    this.begin(connection, beginStatement).setHandler(future.completer());
                 } else {
-                    this.<SQLConnection>close(connection, setAutoCommitAsyncCall.cause())
+                    this.<SQLConnection>close(connection, setAsyncCall.cause())
                             .setHandler(future.completer());
                 }
             });
@@ -64,66 +182,50 @@ public class Dao {
         return future;
     }
 
-    private Future<SQLConnection> setTimezone(final SQLConnection connection) {
-        final Future<SQLConnection> futureConnection = Future.future();
+    private Future<SQLConnection> begin(final SQLConnection connection, final String begin) {
+        final Future<SQLConnection> future = Future.future();
+        final long started = metrics.start();
         try {
-            connection.update(SET_TIMEZONE, setTimezoneAsyncCall -> {
-                if (setTimezoneAsyncCall.succeeded()) {
-                    futureConnection.complete(connection);
+            connection.execute(begin, beginAsyncCall -> {
+                metrics.record(DaoMetrics.Phase.SET_TIMEZONE, started);
+                if (beginAsyncCall.succeeded()) {
+                    future.complete(connection);
                 } else {
-                    this.<SQLConnection>rollback(connection, setTimezoneAsyncCall.cause())
-                            .setHandler(futureConnection.completer());
+                    this.<SQLConnection>rollback(connection, beginAsyncCall.cause(), true)
+                            .setHandler(future.completer());
                 }
             });
         } catch (Throwable t) {
-            this.<SQLConnection>rollback(connection, t)
-                    .setHandler(futureConnection.completer());
+            this.<SQLConnection>rollback(connection, t, true)
+                    .setHandler(future.completer());
         }
-        return futureConnection;
+        return future;
     }
 
-    private <T> Future<T> commit(final SQLConnection connection, final T result) {
-        Future<T> futureResult = Future.future();
-        try {
-            connection.commit(commitAsyncCall -> {
-                if (commitAsyncCall.succeeded()) {
-                    try {
-                        connection.close(closeAsyncCall -> {
-                            if (closeAsyncCall.succeeded()) {
-                                futureResult.complete(result);
-                            } else {
-                                LOGGER.error("Closing connection failed", closeAsyncCall.cause());
-                                futureResult.fail(closeAsyncCall.cause());
-                            }
-                        });
-                    } catch (Throwable t) {
-                        LOGGER.error("Closing connection failed", t);
-                        futureResult.fail(t);
-                    }
-                } else {
-                    this.<T>rollback(connection, commitAsyncCall.cause())
-                            .setHandler(futureResult.completer());
-                }
-            });
-        } catch (Throwable t) {
-            this.<T>rollback(connection, t)
-                    .setHandler(futureResult.completer());
+    private void sendRollback(final SQLConnection connection,
+                              final boolean asStatement,
+                              final Handler<AsyncResult<Void>> handler) {
+        if (asStatement) {
+            connection.execute(ROLLBACK, handler);
+        } else {
+            connection.rollback(handler);
         }
-        return futureResult;
     }
 
     private <T> Future<T> rollback(final SQLConnection connection,
-                                   final Throwable t) {
+                                   final Throwable t,
+                                   final boolean asStatement) {
         Future<T> future = Future.future();
+        final long started = metrics.start();
         try {
-            connection.rollback(rollbackAsyncCall -> {
-                if (rollbackAsyncCall.failed()) {
-                    LOGGER.error("Rollback failed", rollbackAsyncCall.cause());
-                }
+            this.sendRollback(connection, asStatement, rollbackAsyncCall -> {
+                metrics.record(DaoMetrics.Phase.ROLLBACK, started);
+                this.countRollback(rollbackAsyncCall);
                 this.<T>close(connection, t)
                         .setHandler(future.completer());
             });
         } catch (Exception rollbackException) {
+            metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
             LOGGER.error("Rollback failed", rollbackException);
             this.<T>close(connection, t)
                     .setHandler(future.completer());
@@ -135,47 +237,368 @@ public class Dao {
             final SQLConnection connection,
             final Throwable t) {
         final Future<T> future = Future.future();
+        this.closeQuietly(connection, closeAsyncCall -> future.fail(t));
+        return future;
+    }
+
+    private void countRollback(final AsyncResult<?> rollbackAsyncCall) {
+        if (rollbackAsyncCall.failed()) {
+            metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
+            LOGGER.error("Rollback failed", rollbackAsyncCall.cause());
+        } else {
+            metrics.increment(DaoMetrics.Counter.ROLLBACKS);
+        }
+    }
+
+    private <T> Handler<AsyncResult<T>> finishing(final Future<T> future) {
+        if (!metrics.isEnabled()) {
+            return future.completer();
+        }
+        metrics.transactionStarted();
+        return ac -> {
+            metrics.transactionFinished();
+            future.completer().handle(ac);
+        };
+    }
+
+    private SQLConnection managed(final SQLConnection connection) {
+        if (options.getStatementCacheSize() == 0) {
+            return connection;
+        }
+        return this.daoConnection(connection);
+    }
+
+    private DaoConnection daoConnection(final SQLConnection connection) {
+        return new DaoConnection(connection,
+                options.getStatementCacheSize() == 0 ? null : sessions.of(connection),
+                statementCacheStats, options.getStatementCacheSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Transaction<T> acquireTransaction() {
+        if (transactionPool.length > 0) {
+            synchronized (transactionPool) {
+                if (pooledTransactions > 0) {
+                    pooledTransactions--;
+                    final Transaction<?> transaction = transactionPool[pooledTransactions];
+                    transactionPool[pooledTransactions] = null;
+                    return (Transaction<T>) transaction;
+                }
+            }
+        }
+        return new Transaction<>();
+    }
+
+    private void releaseTransaction(final Transaction<?> transaction) {
+        if (transactionPool.length > 0) {
+            synchronized (transactionPool) {
+                if (pooledTransactions < transactionPool.length) {
+                    transactionPool[pooledTransactions] = transaction;
+                    pooledTransactions++;
+                }
+            }
+        }
+    }
+
+    private Vertx timers() {
+        if (vertx != null) {
+            return vertx;
+        }
+        final Context context = Vertx.currentContext();
+        return context == null ? null : context.owner();
+    }
+
+    private void cancelBackend(final int backendPid) {
+        final SQLConnection kept = cancelConnection.get();
+        if (kept != null) {
+            this.cancelBackend(kept, backendPid);
+            return;
+        }
+        try {
+            cancelClient.getConnection(getConnectionAsyncCall -> {
+                if (getConnectionAsyncCall.failed()) {
+                    LOGGER.error("Cancelling backend query failed", getConnectionAsyncCall.cause());
+                    return;
+                }
+                final SQLConnection connection = getConnectionAsyncCall.result();
+                if (cancelConnection.compareAndSet(null, connection)) {
+                    this.cancelBackend(connection, backendPid);
+                } else {
+                    this.closeCancellingConnection(connection);
+                    this.cancelBackend(backendPid);
+                }
+            });
+        } catch (Throwable t) {
+            LOGGER.error("Cancelling backend query failed", t);
+        }
+    }
+
+    private void cancelBackend(final SQLConnection connection, final int backendPid) {
+        try {
+            connection.queryWithParams(CANCEL_BACKEND, new JsonArray().add(backendPid), cancelAsyncCall -> {
+                if (cancelAsyncCall.failed()) {
+                    LOGGER.error("Cancelling backend query failed", cancelAsyncCall.cause());
+                    this.dropCancellingConnection(connection);
+                }
+            });
+        } catch (Throwable t) {
+            LOGGER.error("Cancelling backend query failed", t);
+            this.dropCancellingConnection(connection);
+        }
+    }
+
+    private void dropCancellingConnection(final SQLConnection connection) {
+        if (cancelConnection.compareAndSet(connection, null)) {
+            this.closeCancellingConnection(connection);
+        }
+    }
+
+    private void closeCancellingConnection(final SQLConnection connection) {
         try {
             connection.close(closeAsyncCall -> {
                 if (closeAsyncCall.failed()) {
                     LOGGER.error("Closing connection failed", closeAsyncCall.cause());
                 }
-                future.fail(t);
             });
-        } catch (Exception closeConnectionException) {
-            LOGGER.error("Closing connection failed", closeConnectionException);
-            future.fail(t);
+        } catch (Throwable t) {
+            LOGGER.error("Closing connection failed", t);
         }
-        return future;
+    }
+
+    public final StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    public final DaoMetrics getMetrics() {
+        return metrics;
     }
 
     public final <T> void doInTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
                                               final Future<T> future) {
-        this.getConnectionFromPoolWithoutACAndInTZ().setHandler(
-                getConnectionAC -> {
-                    if (getConnectionAC.succeeded()) {
-                        try {
-                            function.apply(getConnectionAC.result())
-                                    .setHandler(ac -> {
-                                        if (ac.succeeded()) {
-                                            this.commit(getConnectionAC.result(), ac.result())
-                                                    .setHandler(future.completer());
-                                        } else {
-                                            this.<T>rollback(getConnectionAC.result(), ac.cause())
-                                                    .setHandler(future.completer());
-                                        }
-                                    });
-                        } catch (Throwable t) {
-                            this.<T>rollback(getConnectionAC.result(), t)
-                                    .setHandler(future.completer());
-                        }
-                    } else {
-                        future.fail(getConnectionAC.cause());
+        this.doInTransactionPLTZ(function, options.getTransactionTimeout(), future);
+    }
+
+    /**
+     * When the transaction does not finish within timeoutMillis its running query is cancelled when the Dao has a
+     * cancel client and the future fails with {@link TransactionTimeoutException}. The connection given to the
+     * function fails every later call, the transaction is rolled back and the connection released once the running
+     * step or function settles. A commit already sent when the deadline expires decides the outcome. 0 disables the
+     * deadline. With nested transactions enabled a call made within a running transaction runs under a savepoint of
+     * it, its deadline and retries do not apply.
+     */
+    public final <T> void doInTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
+                                              final long timeoutMillis,
+                                              final Future<T> future) {
+        final TransactionScope scope = options.isNestedTransactions() ? TransactionScope.current(scopeKey) : null;
+        if (scope != null) {
+            scope.nested(function, future);
+        } else if (options.getRetryPolicy() == null) {
+            this.<T>acquireTransaction().start(function, timeoutMillis, future);
+        } else {
+            final Vertx timers = this.timers();
+            if (timers == null) {
+                future.fail(new IllegalStateException("Retries need a Vertx instance"));
+                return;
+            }
+            this.attempt(timers, function, timeoutMillis, future, 1);
+        }
+    }
+
+    /**
+     * Registers an action run right after the commit of the managed transaction the caller runs in, before its future
+     * completes. An action registered in a nested transaction runs after the commit of the outermost one and is
+     * dropped when the nested one is rolled back to its savepoint. Returns false without registering when nested
+     * transactions are disabled or the caller does not run within a transaction of this Dao.
+     */
+    public final boolean afterCommit(final Runnable action) {
+        final TransactionScope scope = options.isNestedTransactions() ? TransactionScope.current(scopeKey) : null;
+        if (scope == null) {
+            return false;
+        }
+        scope.afterCommit(action);
+        return true;
+    }
+
+    public final ReadStream<JsonArray> streamInTransactionPLTZ(final String sql, final JsonArray params) {
+        return this.streamInTransactionPLTZ(sql, params, options.getStreamFetchSize());
+    }
+
+    /**
+     * Streams rows of the query through a server side cursor, fetching fetchSize rows at a time while the stream is
+     * not paused, in a transaction committed after the last row was handled and rolled back when anything fails.
+     * The end handler is called after the commit. Such transactions are not retried since rows already handled
+     * would be handled again.
+     */
+    public final ReadStream<JsonArray> streamInTransactionPLTZ(final String sql,
+                                                               final JsonArray params,
+                                                               final int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Stream fetch size must be positive");
+        }
+        final CursorStream stream = new CursorStream(sql, params, fetchSize);
+        final Future<Void> result = Future.future();
+        result.setHandler(stream::finished);
+        this.<Void>acquireTransaction().start(stream::open, options.getTransactionTimeout(), result);
+        return stream;
+    }
+
+    /**
+     * Runs COPY ... FROM STDIN with the given data in a transaction, through the CopyManager of the PostgreSQL JDBC
+     * connection. The iterator is consumed on a worker thread, a failing COPY is cancelled and rolled back. Such
+     * transactions are not retried since the data can not be replayed. See {@link CopyCsv} for encoding rows as CSV.
+     */
+    public final void copyInTransactionPLTZ(final String copySql,
+                                            final Iterator<Buffer> data,
+                                            final Future<CopyResult> future) {
+        this.copy(copySql, future, (bulkCopy, connection) -> bulkCopy.from(connection, data));
+    }
+
+    /**
+     * Like {@link #copyInTransactionPLTZ(String, Iterator, Future)}, the stream is paused while each buffer is
+     * written, so a fast producer does not pile up buffers in memory.
+     */
+    public final void copyInTransactionPLTZ(final String copySql,
+                                            final ReadStream<Buffer> data,
+                                            final Future<CopyResult> future) {
+        this.copy(copySql, future, (bulkCopy, connection) -> bulkCopy.from(connection, data));
+    }
+
+    private void copy(final String copySql,
+                      final Future<CopyResult> future,
+                      final BiFunction<BulkCopy, SQLConnection, Future<CopyResult>> function) {
+        final Vertx workers = this.timers();
+        if (workers == null) {
+            future.fail(new IllegalStateException("COPY needs a Vertx instance"));
+            return;
+        }
+        this.<CopyResult>acquireTransaction().start(
+                connection -> function.apply(new BulkCopy(workers, copySql), connection),
+                options.getTransactionTimeout(), future);
+    }
+
+    /**
+     * Executes the statement once per parameter tuple on the connection of a running transaction, in as few round
+     * trips as the driver allows, and returns the update count of every tuple. Tuples of INSERT ... VALUES
+     * statements rewritten into multi row VALUES report 1 each, or {@link java.sql.Statement#SUCCESS_NO_INFO} when
+     * the statement updated another number of rows. Failing statements are logged with their params.
+     */
+    public final Future<List<Integer>> batchWithParams(final SQLConnection connection,
+                                                       final String sql,
+                                                       final List<JsonArray> batchParams) {
+        return new ParamsBatch(connection, sql, batchParams).execute();
+    }
+
+    private <T> void attempt(final Vertx timers,
+                             final Function<SQLConnection, Future<T>> function,
+                             final long timeoutMillis,
+                             final Future<T> future,
+                             final int attemptNumber) {
+        final RetryPolicy retryPolicy = options.getRetryPolicy();
+        final Future<T> attemptResult = Future.future();
+        attemptResult.setHandler(attemptAsyncCall -> {
+            final String sqlState = attemptAsyncCall.failed()
+                    ? retryPolicy.retryableSqlState(attemptAsyncCall.cause())
+                    : null;
+            if (sqlState == null || attemptNumber >= retryPolicy.getMaxAttempts()) {
+                future.completer().handle(attemptAsyncCall);
+                return;
+            }
+            metrics.retried(sqlState);
+            timers.setTimer(Math.max(1, retryPolicy.backoff(attemptNumber)),
+                    id -> this.attempt(timers, function, timeoutMillis, future, attemptNumber + 1));
+        });
+        this.<T>acquireTransaction().start(function, timeoutMillis, attemptResult);
+    }
+
+    /**
+     * Runs the function in a read-only transaction on a read replica, ended with a rollback. Without replicas the
+     * transaction runs on the primary pool like {@link #doInTransactionPLTZ(Function, Future)} does, under admission
+     * control and the transaction timeout of the options. Transactions on replicas are not bounded by either.
+     */
+    public final <T> void doInReadOnlyTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
+                                                      final Future<T> future) {
+        if (readRouter == null) {
+            this.<T>acquireTransaction().start(function, options.getTransactionTimeout(), true, future);
+            return;
+        }
+        final Handler<AsyncResult<T>> completer = this.finishing(future);
+        final int replica = readRouter.acquire();
+        final Future<T> result = Future.future();
+        result.setHandler(ac -> {
+            readRouter.release(replica);
+            completer.handle(ac);
+        });
+        final long checkoutStarted = metrics.start();
+        try {
+            readRouter.client(replica).getConnection(getConnectionAsyncCall -> {
+                metrics.record(DaoMetrics.Phase.CHECKOUT, checkoutStarted);
+                if (getConnectionAsyncCall.failed()) {
+                    result.fail(getConnectionAsyncCall.cause());
+                    return;
+                }
+                final SQLConnection connection = getConnectionAsyncCall.result();
+                this.beginInSingleStatement(connection, BEGIN_READ_ONLY).setHandler(beginAsyncCall -> {
+                    if (beginAsyncCall.failed()) {
+                        result.fail(beginAsyncCall.cause());
+                        return;
                     }
+                    final long functionStarted = metrics.start();
+                    Future<T> functionResult;
+                    try {
+                        functionResult = function.apply(this.managed(connection));
+                    } catch (Throwable t) {
+                        functionResult = Future.failedFuture(t);
+                    }
+                    functionResult.setHandler(ac -> {
+                        metrics.record(DaoMetrics.Phase.FUNCTION, functionStarted);
+                        this.endReadOnly(connection, ac)
+                                .setHandler(result.completer());
+                    });
+                });
+            });
+        } catch (Throwable t) {
+            result.fail(t);
+        }
+    }
+
+    private <T> Future<T> endReadOnly(final SQLConnection connection, final AsyncResult<T> functionResult) {
+        final Future<T> future = Future.future();
+        final Handler<AsyncResult<Void>> closeHandler = closeAsyncCall -> future.completer().handle(functionResult);
+        final long started = metrics.start();
+        try {
+            connection.execute(ROLLBACK, rollbackAsyncCall -> {
+                metrics.record(DaoMetrics.Phase.ROLLBACK, started);
+                if (rollbackAsyncCall.failed()) {
+                    metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
+                    LOGGER.error("Rollback failed", rollbackAsyncCall.cause());
                 }
-        );
+                this.closeQuietly(connection, closeHandler);
+            });
+        } catch (Throwable t) {
+            metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
+            LOGGER.error("Rollback failed", t);
+            this.closeQuietly(connection, closeHandler);
+        }
+        return future;
     }
 
+    private void closeQuietly(final SQLConnection connection, final Handler<AsyncResult<Void>> handler) {
+        final long started = metrics.start();
+        try {
+            connection.close(closeAsyncCall -> {
+                metrics.record(DaoMetrics.Phase.CLOSE, started);
+                if (closeAsyncCall.failed()) {
+                    metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+                    LOGGER.error("Closing connection failed", closeAsyncCall.cause());
+                }
+                handler.handle(closeAsyncCall);
+            });
+        } catch (Throwable t) {
+            metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+            LOGGER.error("Closing connection failed", t);
+            handler.handle(Future.failedFuture(t));
+        }
+    }
 
     public final <T> Future<T> doInTryCatch(final Handler<Future<T>> handler) {
         Future<T> future = Future.future();
@@ -217,4 +640,585 @@ public class Dao {
                                                                 final JsonArray queryParams) {
         return doInTryCatch(handler, future, Optional.of(query), Optional.of(queryParams));
     }
+
+    private enum TransactionState {
+        IDLE(null, false),
+        QUEUED(null, true),
+        CHECKOUT(DaoMetrics.Phase.CHECKOUT, true),
+        BACKEND_PID(null, true),
+        SET_SESSION_TIMEZONE(DaoMetrics.Phase.SET_TIMEZONE, true),
+        SET_AUTO_COMMIT(DaoMetrics.Phase.SET_AUTO_COMMIT, true),
+        SET_TIMEZONE(DaoMetrics.Phase.SET_TIMEZONE, true),
+        BEGIN(DaoMetrics.Phase.SET_TIMEZONE, true),
+        FUNCTION(DaoMetrics.Phase.FUNCTION, true),
+        COMMIT(DaoMetrics.Phase.COMMIT, true),
+        END_READ_ONLY(DaoMetrics.Phase.ROLLBACK, false),
+        ROLLBACK(DaoMetrics.Phase.ROLLBACK, false),
+        CLOSE_AFTER_COMMIT(DaoMetrics.Phase.CLOSE, false),
+        CLOSE_AFTER_FAILURE(DaoMetrics.Phase.CLOSE, false);
+
+        private final DaoMetrics.Phase phase;
+
+        private final boolean coveredByDeadline;
+
+        TransactionState(final DaoMetrics.Phase phase, final boolean coveredByDeadline) {
+            this.phase = phase;
+            this.coveredByDeadline = coveredByDeadline;
+        }
+    }
+
+    /**
+     * A single {@link #doInTransactionPLTZ} call. The object is the handler of every asynchronous step and keeps the
+     * step it waits for in {@link #state}, so a transaction allocates no futures or capturing lambdas of its own and
+     * can be reused once it finishes. A call throwing after its handler already moved the transaction on rethrows
+     * instead of being treated as a failure of the step. An expired deadline cancels the running query first and
+     * fails the future right away unless a commit is pending. The step in progress is still awaited: a ROLLBACK sent
+     * while a query runs would fail and let the connection go back to the pool inside the transaction, so the
+     * transaction is rolled back and closed once the step or function settles. The connection given to the function
+     * fails every call made after the deadline, so the function can not run statements past the rollback. A pending
+     * checkout is closed once it arrives. Under admission control the transaction first waits for a permit, covered
+     * by the deadline, and returns it when it finishes. A read-only transaction starts with BEGIN READ ONLY and ends
+     * with a rollback, a failure of that rollback does not fail the function result.
+     */
+    private final class Transaction<T> implements Handler<AsyncResult<Object>> {
+
+        private TransactionState state = TransactionState.IDLE;
+
+        private int epoch;
+
+        private long started;
+
+        private Function<SQLConnection, Future<T>> function;
+
+        private Future<T> future;
+
+        private SQLConnection connection;
+
+        private ConnectionSessions.ConnectionSession session;
+
+        private T result;
+
+        private Throwable cause;
+
+        private final Handler<Long> expiry = this::expired;
+
+        private final Runnable admitted = this::admitted;
+
+        private boolean holdsPermit;
+
+        private TransactionScope scope;
+
+        private long admittedNanos;
+
+        private long timeoutMillis;
+
+        private Vertx timerVertx;
+
+        private long timerId = NO_TIMER;
+
+        private boolean timedOut;
+
+        private TransactionTimeoutException timeout;
+
+        private DaoConnection guarded;
+
+        private boolean readOnly;
+
+        void start(final Function<SQLConnection, Future<T>> transactionFunction,
+                   final long transactionTimeoutMillis,
+                   final Future<T> transactionFuture) {
+            this.start(transactionFunction, transactionTimeoutMillis, false, transactionFuture);
+        }
+
+        void start(final Function<SQLConnection, Future<T>> transactionFunction,
+                   final long transactionTimeoutMillis,
+                   final boolean readOnlyTransaction,
+                   final Future<T> transactionFuture) {
+            this.readOnly = readOnlyTransaction;
+            this.function = transactionFunction;
+            this.future = transactionFuture;
+            metrics.transactionStarted();
+            if (transactionTimeoutMillis > 0) {
+                this.timerVertx = timers();
+                if (timerVertx == null) {
+                    finish(false, new IllegalStateException("Transaction deadlines need a Vertx instance"));
+                    return;
+                }
+                this.timeoutMillis = transactionTimeoutMillis;
+                this.timerId = timerVertx.setTimer(transactionTimeoutMillis, expiry);
+            }
+            if (admission == null) {
+                checkout();
+                return;
+            }
+            this.state = TransactionState.QUEUED;
+            switch (admission.admit(admitted)) {
+                case ADMITTED:
+                    admitted();
+                    break;
+                case QUEUED:
+                    break;
+                default:
+                    finish(false, new DaoOverloadedException(admission.getLimit(),
+                            options.getAdmissionPolicy().getMaxQueued()));
+            }
+        }
+
+        private void admitted() {
+            this.holdsPermit = true;
+            this.admittedNanos = System.nanoTime();
+            if (timedOut) {
+                finish(false, timeout);
+            } else {
+                checkout();
+            }
+        }
+
+        private void checkout() {
+            final SQLConnection kept = affinity == null ? null : affinity.take();
+            if (kept != null) {
+                this.<SQLConnection>await(TransactionState.CHECKOUT).handle(Future.succeededFuture(kept));
+                return;
+            }
+            final int current = epoch;
+            try {
+                sqlClient.getConnection(this.<SQLConnection>await(TransactionState.CHECKOUT));
+            } catch (Throwable t) {
+                if (moved(TransactionState.CHECKOUT, current)) {
+                    throw t;
+                }
+                finish(false, t);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handle(final AsyncResult<Object> asyncCall) {
+            if (state == TransactionState.IDLE) {
+                throw new IllegalStateException("Transaction is not waiting for any result");
+            }
+            if (state.phase != null) {
+                metrics.record(state.phase, started);
+            }
+            if (timedOut && state.coveredByDeadline) {
+                afterDeadline(asyncCall);
+                return;
+            }
+            switch (state) {
+                case CHECKOUT:
+                    if (asyncCall.succeeded()) {
+                        checkedOut((SQLConnection) asyncCall.result());
+                    } else {
+                        finish(false, asyncCall.cause());
+                    }
+                    break;
+                case BACKEND_PID:
+                    if (asyncCall.succeeded()) {
+                        session.setBackendPid(((ResultSet) asyncCall.result()).getResults().get(0).getInteger(0));
+                        setup();
+                    } else {
+                        close(asyncCall.cause());
+                    }
+                    break;
+                case SET_SESSION_TIMEZONE:
+                    if (asyncCall.succeeded()) {
+                        session.markInitialized();
+                        beginTransaction();
+                    } else {
+                        close(asyncCall.cause());
+                    }
+                    break;
+                case SET_AUTO_COMMIT:
+                    if (asyncCall.failed()) {
+                        close(asyncCall.cause());
+                    } else if (sessionMode()) {
+                        runFunction();
+                    } else {
+                        setTimezone();
+                    }
+                    break;
+                case SET_TIMEZONE:
+                case BEGIN:
+                    if (asyncCall.succeeded()) {
+                        runFunction();
+                    } else {
+                        rollback(asyncCall.cause());
+                    }
+                    break;
+                case FUNCTION:
+                    if (asyncCall.succeeded()) {
+                        result = (T) asyncCall.result();
+                        if (readOnly) {
+                            endReadOnly();
+                        } else {
+                            commit();
+                        }
+                    } else {
+                        rollback(asyncCall.cause());
+                    }
+                    break;
+                case COMMIT:
+                    if (asyncCall.succeeded()) {
+                        committed();
+                    } else {
+                        rollback(asyncCall.cause());
+                    }
+                    break;
+                case END_READ_ONLY:
+                    if (asyncCall.failed()) {
+                        metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
+                        LOGGER.error("Rollback failed", asyncCall.cause());
+                    }
+                    closeAfterCommit();
+                    break;
+                case ROLLBACK:
+                    countRollback(asyncCall);
+                    close(cause);
+                    break;
+                case CLOSE_AFTER_COMMIT:
+                    if (asyncCall.succeeded()) {
+                        finish(true, null);
+                    } else {
+                        metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+                        LOGGER.error("Closing connection failed", asyncCall.cause());
+                        finish(false, asyncCall.cause());
+                    }
+                    break;
+                case CLOSE_AFTER_FAILURE:
+                    if (asyncCall.failed()) {
+                        metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+                        LOGGER.error("Closing connection failed", asyncCall.cause());
+                    }
+                    finish(false, cause);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected transaction state " + state);
+            }
+        }
+
+        private void afterDeadline(final AsyncResult<Object> asyncCall) {
+            switch (state) {
+                case CHECKOUT:
+                    if (asyncCall.succeeded()) {
+                        this.connection = (SQLConnection) asyncCall.result();
+                        close(timeout);
+                    } else {
+                        finish(false, timeout);
+                    }
+                    break;
+                case COMMIT:
+                    if (asyncCall.succeeded()) {
+                        committed();
+                    } else {
+                        metrics.increment(DaoMetrics.Counter.TIMEOUTS);
+                        rollback(new TransactionTimeoutException(timeoutMillis, asyncCall.cause()));
+                    }
+                    break;
+                case BACKEND_PID:
+                case SET_SESSION_TIMEZONE:
+                    close(timeout);
+                    break;
+                default:
+                    rollback(timeout);
+            }
+        }
+
+        private void expired(final long id) {
+            if (id != timerId) {
+                return;
+            }
+            this.timerId = NO_TIMER;
+            if (!state.coveredByDeadline) {
+                return;
+            }
+            this.timedOut = true;
+            if (state == TransactionState.COMMIT) {
+                return;
+            }
+            final int backendPid = session == null ? 0 : session.getBackendPid();
+            this.timeout = new TransactionTimeoutException(timeoutMillis, null);
+            metrics.increment(DaoMetrics.Counter.TIMEOUTS);
+            if (guarded != null) {
+                guarded.reject(timeout);
+            }
+            final TransactionTimeoutException failure = timeout;
+            final Future<T> completed = future;
+            this.future = null;
+            if (state == TransactionState.QUEUED && admission.remove(admitted)) {
+                finish(false, failure);
+            }
+            if (backendPid != 0 && cancelClient != null) {
+                cancelBackend(backendPid);
+            }
+            completed.fail(failure);
+        }
+
+        private boolean sessionMode() {
+            return options.getConnectionInitialization() == DaoOptions.ConnectionInitialization.SESSION;
+        }
+
+        private void checkedOut(final SQLConnection checkedOutConnection) {
+            this.connection = checkedOutConnection;
+            final boolean cancellable = timeoutMillis > 0 && cancelClient != null;
+            if (sessionMode() || cancellable) {
+                this.session = sessions.of(checkedOutConnection);
+            }
+            if (cancellable && session.getBackendPid() == 0) {
+                queryBackendPid();
+            } else {
+                setup();
+            }
+        }
+
+        private void queryBackendPid() {
+            final int current = epoch;
+            try {
+                connection.query(BACKEND_PID, this.await(TransactionState.BACKEND_PID));
+            } catch (Throwable t) {
+                if (moved(TransactionState.BACKEND_PID, current)) {
+                    throw t;
+                }
+                close(t);
+            }
+        }
+
+        /**
+         * The session time zone is set in a statement of its own before the transaction starts, a SET sent within
+         * the transaction block would be undone by its rollback.
+         */
+        private void setup() {
+            if (sessionMode() && !session.isInitialized()) {
+                setSessionTimezone();
+            } else {
+                beginTransaction();
+            }
+        }
+
+        private void beginTransaction() {
+            if (options.isPipelined() || readOnly) {
+                begin();
+            } else {
+                setAutoCommitFalse();
+            }
+        }
+
+        private void begin() {
+            final String begin;
+            if (readOnly) {
+                begin = sessionMode() ? BEGIN_READ_ONLY : BEGIN_READ_ONLY_WITH_TIMEZONE;
+            } else {
+                begin = sessionMode() ? BEGIN : BEGIN_WITH_TIMEZONE;
+            }
+            final int current = epoch;
+            try {
+                connection.execute(begin, this.<Void>await(TransactionState.BEGIN));
+            } catch (Throwable t) {
+                if (moved(TransactionState.BEGIN, current)) {
+                    throw t;
+                }
+                rollback(t);
+            }
+        }
+
+        private void setSessionTimezone() {
+            final int current = epoch;
+            try {
+                connection.update(SET_SESSION_TIMEZONE, this.await(TransactionState.SET_SESSION_TIMEZONE));
+            } catch (Throwable t) {
+                if (moved(TransactionState.SET_SESSION_TIMEZONE, current)) {
+                    throw t;
+                }
+                close(t);
+            }
+        }
+
+        private void setAutoCommitFalse() {
+            final int current = epoch;
+            try {
+                connection.setAutoCommit(false, this.<Void>await(TransactionState.SET_AUTO_COMMIT));
+            } catch (Throwable t) {
+                if (moved(TransactionState.SET_AUTO_COMMIT, current)) {
+                    throw t;
+                }
+                close(t);
+            }
+        }
+
+        private void setTimezone() {
+            final int current = epoch;
+            try {
+                connection.update(SET_TIMEZONE, this.await(TransactionState.SET_TIMEZONE));
+            } catch (Throwable t) {
+                if (moved(TransactionState.SET_TIMEZONE, current)) {
+                    throw t;
+                }
+                rollback(t);
+            }
+        }
+
+        private void runFunction() {
+            final int current = epoch;
+            final Handler<AsyncResult<T>> handler = this.await(TransactionState.FUNCTION);
+            try {
+                final SQLConnection functionConnection;
+                if (timeoutMillis > 0) {
+                    this.guarded = daoConnection(connection);
+                    functionConnection = guarded;
+                } else {
+                    functionConnection = managed(connection);
+                }
+                if (options.isNestedTransactions() && !readOnly) {
+                    this.scope = new TransactionScope(scopeKey, functionConnection);
+                    scope.apply(function).setHandler(handler);
+                } else {
+                    function.apply(functionConnection).setHandler(handler);
+                }
+            } catch (Throwable t) {
+                if (moved(TransactionState.FUNCTION, current)) {
+                    throw t;
+                }
+                metrics.record(DaoMetrics.Phase.FUNCTION, started);
+                rollback(t);
+            }
+        }
+
+        private void commit() {
+            final int current = epoch;
+            try {
+                if (options.isPipelined()) {
+                    connection.execute(COMMIT, this.<Void>await(TransactionState.COMMIT));
+                } else {
+                    connection.commit(this.<Void>await(TransactionState.COMMIT));
+                }
+            } catch (Throwable t) {
+                if (moved(TransactionState.COMMIT, current)) {
+                    throw t;
+                }
+                rollback(t);
+            }
+        }
+
+        private void endReadOnly() {
+            final int current = epoch;
+            try {
+                connection.execute(ROLLBACK, this.<Void>await(TransactionState.END_READ_ONLY));
+            } catch (Throwable t) {
+                if (moved(TransactionState.END_READ_ONLY, current)) {
+                    throw t;
+                }
+                metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
+                LOGGER.error("Rollback failed", t);
+                closeAfterCommit();
+            }
+        }
+
+        private void committed() {
+            metrics.increment(DaoMetrics.Counter.COMMITS);
+            if (scope != null) {
+                scope.committed();
+            }
+            closeAfterCommit();
+        }
+
+        private void closeAfterCommit() {
+            if (affinity != null && affinity.offer(connection)) {
+                finish(true, null);
+                return;
+            }
+            final int current = epoch;
+            try {
+                connection.close(this.<Void>await(TransactionState.CLOSE_AFTER_COMMIT));
+            } catch (Throwable t) {
+                if (moved(TransactionState.CLOSE_AFTER_COMMIT, current)) {
+                    throw t;
+                }
+                metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+                LOGGER.error("Closing connection failed", t);
+                finish(false, t);
+            }
+        }
+
+        private void rollback(final Throwable failure) {
+            this.cause = failure;
+            final int current = epoch;
+            try {
+                sendRollback(connection, options.isPipelined() || readOnly,
+                        this.<Void>await(TransactionState.ROLLBACK));
+            } catch (Exception rollbackException) {
+                if (moved(TransactionState.ROLLBACK, current)) {
+                    throw rollbackException;
+                }
+                metrics.increment(DaoMetrics.Counter.ROLLBACK_FAILURES);
+                LOGGER.error("Rollback failed", rollbackException);
+                close(failure);
+            }
+        }
+
+        private void close(final Throwable failure) {
+            this.cause = failure;
+            final int current = epoch;
+            try {
+                connection.close(this.<Void>await(TransactionState.CLOSE_AFTER_FAILURE));
+            } catch (Throwable t) {
+                if (moved(TransactionState.CLOSE_AFTER_FAILURE, current)) {
+                    throw t;
+                }
+                metrics.increment(DaoMetrics.Counter.CLOSE_FAILURES);
+                LOGGER.error("Closing connection failed", t);
+                finish(false, failure);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> Handler<AsyncResult<R>> await(final TransactionState next) {
+            this.state = next;
+            this.started = metrics.start();
+            return (Handler<AsyncResult<R>>) (Handler<?>) this;
+        }
+
+        private boolean moved(final TransactionState expected, final int expectedEpoch) {
+            return state != expected || epoch != expectedEpoch;
+        }
+
+        private void finish(final boolean succeeded, final Throwable failure) {
+            final Future<T> completed = future;
+            final T value = result;
+            metrics.transactionFinished();
+            if (timerId != NO_TIMER) {
+                timerVertx.cancelTimer(timerId);
+            }
+            this.timeoutMillis = 0;
+            this.timerVertx = null;
+            this.timerId = NO_TIMER;
+            this.timedOut = false;
+            this.timeout = null;
+            this.state = TransactionState.IDLE;
+            this.epoch++;
+            this.function = null;
+            this.future = null;
+            this.connection = null;
+            this.session = null;
+            this.guarded = null;
+            this.readOnly = false;
+            this.result = null;
+            this.cause = null;
+            if (scope != null) {
+                scope.close();
+                this.scope = null;
+            }
+            if (holdsPermit) {
+                this.holdsPermit = false;
+                admission.release(System.nanoTime() - admittedNanos, failure instanceof TransactionTimeoutException);
+            }
+            releaseTransaction(this);
+            if (completed == null) {
+                return;
+            }
+            if (succeeded) {
+                completed.complete(value);
+            } else {
+                completed.fail(failure);
+            }
+        }
+    }
 }
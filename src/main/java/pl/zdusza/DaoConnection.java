@@ -0,0 +1,325 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Connection handed out by {@link Dao} when a feature needs to see the statements run in a managed transaction.
+ * Parameterless statements are run through server-side prepared statements cached per physical connection when a
+ * session bound to it is given, statements with parameters are prepared and cached by the driver itself. An evicted
+ * statement is deallocated only once the statement replacing it got prepared. Once rejected, every call fails with
+ * the given cause without reaching the delegate, e.g. after the deadline of the transaction.
+ */
+final class DaoConnection implements SQLConnection {
+
+    private static final String INVALID_STATEMENT_NAME = "26000";
+
+    private final SQLConnection delegate;
+
+    private final ConnectionSessions.ConnectionSession session;
+
+    private final StatementCacheStats stats;
+
+    private final int statementCacheSize;
+
+    private volatile Throwable rejection;
+
+    DaoConnection(final SQLConnection delegate,
+                  final ConnectionSessions.ConnectionSession session,
+                  final StatementCacheStats stats,
+                  final int statementCacheSize) {
+        this.delegate = delegate;
+        this.session = session;
+        this.stats = stats;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    SQLConnection delegate() {
+        return delegate;
+    }
+
+    /**
+     * Fails every later call with the cause.
+     */
+    void reject(final Throwable cause) {
+        this.rejection = cause;
+    }
+
+    private <R> boolean rejected(final Handler<AsyncResult<R>> handler) {
+        final Throwable cause = rejection;
+        if (cause == null) {
+            return false;
+        }
+        handler.handle(Future.failedFuture(cause));
+        return true;
+    }
+
+    @Override
+    public SQLConnection setAutoCommit(final boolean autoCommit, final Handler<AsyncResult<Void>> resultHandler) {
+        if (!rejected(resultHandler)) {
+            delegate.setAutoCommit(autoCommit, resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection execute(final String sql, final Handler<AsyncResult<Void>> resultHandler) {
+        if (!rejected(resultHandler)) {
+            delegate.execute(sql, resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection query(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+        if (rejected(resultHandler)) {
+            return this;
+        }
+        final String statement = session == null || !session.isIdentified() ? null : cacheable(sql);
+        if (statement == null) {
+            delegate.query(sql, resultHandler);
+        } else {
+            this.prepared(statement, name -> delegate.query("EXECUTE " + name, asyncCall -> {
+                invalidateWhenMissing(statement, asyncCall);
+                resultHandler.handle(asyncCall);
+            }), resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStream(final String sql, final Handler<AsyncResult<SQLRowStream>> handler) {
+        if (!rejected(handler)) {
+            delegate.queryStream(sql, handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryWithParams(final String sql,
+                                         final JsonArray params,
+                                         final Handler<AsyncResult<ResultSet>> resultHandler) {
+        if (!rejected(resultHandler)) {
+            delegate.queryWithParams(sql, params, resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStreamWithParams(final String sql,
+                                               final JsonArray params,
+                                               final Handler<AsyncResult<SQLRowStream>> handler) {
+        if (!rejected(handler)) {
+            delegate.queryStreamWithParams(sql, params, handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection update(final String sql, final Handler<AsyncResult<UpdateResult>> resultHandler) {
+        if (rejected(resultHandler)) {
+            return this;
+        }
+        final String statement = session == null || !session.isIdentified() ? null : cacheable(sql);
+        if (statement == null) {
+            delegate.update(sql, resultHandler);
+        } else {
+            this.prepared(statement, name -> delegate.update("EXECUTE " + name, asyncCall -> {
+                invalidateWhenMissing(statement, asyncCall);
+                resultHandler.handle(asyncCall);
+            }), resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection updateWithParams(final String sql,
+                                          final JsonArray params,
+                                          final Handler<AsyncResult<UpdateResult>> resultHandler) {
+        if (!rejected(resultHandler)) {
+            delegate.updateWithParams(sql, params, resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection call(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+        if (!rejected(resultHandler)) {
+            delegate.call(sql, resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection callWithParams(final String sql,
+                                        final JsonArray params,
+                                        final JsonArray outputs,
+                                        final Handler<AsyncResult<ResultSet>> resultHandler) {
+        if (!rejected(resultHandler)) {
+            delegate.callWithParams(sql, params, outputs, resultHandler);
+        }
+        return this;
+    }
+
+    @Override
+    public void close(final Handler<AsyncResult<Void>> handler) {
+        if (!rejected(handler)) {
+            delegate.close(handler);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (rejection == null) {
+            delegate.close();
+        }
+    }
+
+    @Override
+    public SQLConnection commit(final Handler<AsyncResult<Void>> handler) {
+        if (!rejected(handler)) {
+            delegate.commit(handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection rollback(final Handler<AsyncResult<Void>> handler) {
+        if (!rejected(handler)) {
+            delegate.rollback(handler);
+        }
+        return this;
+    }
+
+    @SuppressWarnings("deprecation")
+    public SQLConnection setQueryTimeout(final int timeoutInSeconds) {
+        delegate.setQueryTimeout(timeoutInSeconds);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batch(final List<String> sqlStatements, final Handler<AsyncResult<List<Integer>>> handler) {
+        if (!rejected(handler)) {
+            delegate.batch(sqlStatements, handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchWithParams(final String sqlStatement,
+                                         final List<JsonArray> args,
+                                         final Handler<AsyncResult<List<Integer>>> handler) {
+        if (!rejected(handler)) {
+            delegate.batchWithParams(sqlStatement, args, handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchCallableWithParams(final String sqlStatement,
+                                                 final List<JsonArray> inArgs,
+                                                 final List<JsonArray> outArgs,
+                                                 final Handler<AsyncResult<List<Integer>>> handler) {
+        if (!rejected(handler)) {
+            delegate.batchCallableWithParams(sqlStatement, inArgs, outArgs, handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection setTransactionIsolation(final TransactionIsolation isolation,
+                                                 final Handler<AsyncResult<Void>> handler) {
+        if (!rejected(handler)) {
+            delegate.setTransactionIsolation(isolation, handler);
+        }
+        return this;
+    }
+
+    @Override
+    public SQLConnection getTransactionIsolation(final Handler<AsyncResult<TransactionIsolation>> handler) {
+        if (!rejected(handler)) {
+            delegate.getTransactionIsolation(handler);
+        }
+        return this;
+    }
+
+    public <N> N unwrap() {
+        return delegate.unwrap();
+    }
+
+    private <R> void prepared(final String statement,
+                              final Handler<String> execution,
+                              final Handler<AsyncResult<R>> resultHandler) {
+        final String cached = session.statement(statement);
+        if (cached != null) {
+            stats.hit();
+            execution.handle(cached);
+            return;
+        }
+        stats.miss();
+        final String name = session.nextStatementName();
+        final String evicted = session.evictionCandidate(statementCacheSize);
+        final String prepare = "PREPARE " + name + " AS " + statement;
+        delegate.execute(evicted == null ? prepare : prepare + "; DEALLOCATE " + evicted, prepareAsyncCall -> {
+            if (prepareAsyncCall.succeeded()) {
+                if (evicted != null) {
+                    stats.eviction();
+                }
+                session.putStatement(statement, name, evicted);
+                execution.handle(name);
+            } else {
+                if (evicted != null) {
+                    session.keepStatement(evicted);
+                }
+                resultHandler.handle(Future.failedFuture(prepareAsyncCall.cause()));
+            }
+        });
+    }
+
+    private void invalidateWhenMissing(final String statement, final AsyncResult<?> asyncCall) {
+        if (asyncCall.failed() && INVALID_STATEMENT_NAME.equals(RetryPolicy.sqlState(asyncCall.cause()))) {
+            session.removeStatement(statement);
+        }
+    }
+
+    static String cacheable(final String sql) {
+        String statement = sql.trim();
+        while (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1).trim();
+        }
+        if (statement.indexOf(';') >= 0) {
+            return null;
+        }
+        final int keywordEnd = firstWhitespace(statement);
+        switch (statement.substring(0, keywordEnd).toUpperCase(Locale.ROOT)) {
+            case "SELECT":
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "VALUES":
+            case "WITH":
+                return statement;
+            default:
+                return null;
+        }
+    }
+
+    private static int firstWhitespace(final String statement) {
+        for (int i = 0; i < statement.length(); i++) {
+            if (Character.isWhitespace(statement.charAt(i))) {
+                return i;
+            }
+        }
+        return statement.length();
+    }
+}
@@ -0,0 +1,159 @@
+package pl.zdusza;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms of every transaction phase and outcome counters of a {@link Dao}. When metrics are disabled
+ * nothing is recorded and no clock is read.
+ */
+public final class DaoMetrics {
+
+    public enum Phase {
+        CHECKOUT,
+        SET_AUTO_COMMIT,
+        SET_TIMEZONE,
+        FUNCTION,
+        COMMIT,
+        ROLLBACK,
+        CLOSE
+    }
+
+    public enum Counter {
+        COMMITS,
+        ROLLBACKS,
+        ROLLBACK_FAILURES,
+        CLOSE_FAILURES,
+        TIMEOUTS,
+        REJECTIONS
+    }
+
+    private final boolean enabled;
+
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Map<String, LongAdder> retries = new ConcurrentHashMap<>();
+
+    private volatile int queued;
+
+    private volatile int admissionLimit;
+
+    DaoMetrics(final boolean enabled) {
+        this.enabled = enabled;
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LatencyHistogram getHistogram(final Phase phase) {
+        return histograms.get(phase);
+    }
+
+    public long getCount(final Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Number of transactions retried because of the given SQLSTATE.
+     */
+    public long getRetries(final String sqlState) {
+        final LongAdder adder = retries.get(sqlState);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Number of transactions waiting for admission.
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Current limit of transactions in flight of admission control, 0 without admission control.
+     */
+    public int getAdmissionLimit() {
+        return admissionLimit;
+    }
+
+    public JsonObject toJson() {
+        final JsonObject phases = new JsonObject();
+        histograms.forEach((phase, histogram) -> phases.put(name(phase), histogram.toJson()));
+        final JsonObject counts = new JsonObject();
+        counters.forEach((counter, adder) -> counts.put(name(counter), adder.sum()));
+        final JsonObject retried = new JsonObject();
+        retries.forEach((sqlState, adder) -> retried.put(sqlState, adder.sum()));
+        return new JsonObject()
+                .put("phases", phases)
+                .put("counters", counts)
+                .put("retries", retried)
+                .put("inFlight", getInFlight())
+                .put("queued", getQueued())
+                .put("admissionLimit", getAdmissionLimit());
+    }
+
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void record(final Phase phase, final long startNanos) {
+        if (enabled) {
+            histograms.get(phase).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    void increment(final Counter counter) {
+        if (enabled) {
+            counters.get(counter).increment();
+        }
+    }
+
+    void retried(final String sqlState) {
+        if (enabled) {
+            retries.computeIfAbsent(sqlState, key -> new LongAdder()).increment();
+        }
+    }
+
+    void admissionChanged(final int queuedTransactions, final int limit) {
+        if (enabled) {
+            this.queued = queuedTransactions;
+            this.admissionLimit = limit;
+        }
+    }
+
+    void transactionStarted() {
+        if (enabled) {
+            inFlight.incrementAndGet();
+        }
+    }
+
+    void transactionFinished() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static String name(final Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,222 @@
+package pl.zdusza;
+
+import java.util.Objects;
+
+public final class DaoOptions {
+
+    public enum ConnectionInitialization {
+        /**
+         * SET LOCAL TIME ZONE is run at the beginning of every transaction.
+         */
+        TRANSACTION,
+        /**
+         * SET TIME ZONE is run once per physical connection, transactions only issue the user's queries and COMMIT.
+         */
+        SESSION
+    }
+
+    public enum ReplicaSelection {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
+    private static final long DEFAULT_CONNECTION_AFFINITY_IDLE_TIMEOUT = 1000;
+
+    private ConnectionInitialization connectionInitialization = ConnectionInitialization.TRANSACTION;
+
+    private boolean pipelined;
+
+    private int statementCacheSize;
+
+    private ReplicaSelection replicaSelection = ReplicaSelection.ROUND_ROBIN;
+
+    private boolean metricsEnabled;
+
+    private int transactionPoolSize;
+
+    private long transactionTimeout;
+
+    private RetryPolicy retryPolicy;
+
+    private int streamFetchSize = DEFAULT_STREAM_FETCH_SIZE;
+
+    private AdmissionPolicy admissionPolicy;
+
+    private int connectionAffinitySize;
+
+    private long connectionAffinityIdleTimeout = DEFAULT_CONNECTION_AFFINITY_IDLE_TIMEOUT;
+
+    private boolean nestedTransactions;
+
+    public ConnectionInitialization getConnectionInitialization() {
+        return connectionInitialization;
+    }
+
+    public DaoOptions setConnectionInitialization(final ConnectionInitialization value) {
+        this.connectionInitialization = Objects.requireNonNull(value);
+        return this;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Sends BEGIN and the time zone setup as a single statement and ends transactions with plain COMMIT/ROLLBACK
+     * statements, so the transaction setup costs one round trip instead of one per command.
+     */
+    public DaoOptions setPipelined(final boolean value) {
+        this.pipelined = value;
+        return this;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Maximum number of parameterless statements kept prepared on every physical connection, 0 disables the cache.
+     */
+    public DaoOptions setStatementCacheSize(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Statement cache size must not be negative");
+        }
+        this.statementCacheSize = value;
+        return this;
+    }
+
+    public ReplicaSelection getReplicaSelection() {
+        return replicaSelection;
+    }
+
+    public DaoOptions setReplicaSelection(final ReplicaSelection value) {
+        this.replicaSelection = Objects.requireNonNull(value);
+        return this;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public DaoOptions setMetricsEnabled(final boolean value) {
+        this.metricsEnabled = value;
+        return this;
+    }
+
+    public int getTransactionPoolSize() {
+        return transactionPoolSize;
+    }
+
+    /**
+     * Maximum number of finished transaction objects kept for reuse by later transactions, 0 disables pooling.
+     */
+    public DaoOptions setTransactionPoolSize(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Transaction pool size must not be negative");
+        }
+        this.transactionPoolSize = value;
+        return this;
+    }
+
+    public long getTransactionTimeout() {
+        return transactionTimeout;
+    }
+
+    /**
+     * Default deadline of transactions in milliseconds, covering checkout, setup, the function and commit.
+     * 0 disables deadlines.
+     */
+    public DaoOptions setTransactionTimeout(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Transaction timeout must not be negative");
+        }
+        this.transactionTimeout = value;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Policy of re-running transactions failing with retryable SQLSTATEs, null disables retries. Backoff runs on the
+     * Vertx of the Dao or of the calling context, transactions started without either fail with IllegalStateException.
+     */
+    public DaoOptions setRetryPolicy(final RetryPolicy value) {
+        this.retryPolicy = value;
+        return this;
+    }
+
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    /**
+     * Default number of rows fetched from the cursor of a stream at a time.
+     */
+    public DaoOptions setStreamFetchSize(final int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Stream fetch size must be positive");
+        }
+        this.streamFetchSize = value;
+        return this;
+    }
+
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    /**
+     * Policy of admitting transactions to the SQLClient pool, null admits every transaction right away.
+     */
+    public DaoOptions setAdmissionPolicy(final AdmissionPolicy value) {
+        this.admissionPolicy = value;
+        return this;
+    }
+
+    public int getConnectionAffinitySize() {
+        return connectionAffinitySize;
+    }
+
+    /**
+     * Number of connections of committed transactions kept per Vert.x context for the next transactions started on
+     * it instead of being returned to the pool. 0 disables connection affinity.
+     */
+    public DaoOptions setConnectionAffinitySize(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Connection affinity size must not be negative");
+        }
+        this.connectionAffinitySize = value;
+        return this;
+    }
+
+    public long getConnectionAffinityIdleTimeout() {
+        return connectionAffinityIdleTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which a kept connection which was not reused is returned to the pool.
+     */
+    public DaoOptions setConnectionAffinityIdleTimeout(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Connection affinity idle timeout must be positive");
+        }
+        this.connectionAffinityIdleTimeout = value;
+        return this;
+    }
+
+    public boolean isNestedTransactions() {
+        return nestedTransactions;
+    }
+
+    /**
+     * When enabled, a transaction started from within a running one, in its function or in callbacks of statements
+     * run on its connection, runs under a savepoint on the same connection instead of opening another transaction.
+     */
+    public DaoOptions setNestedTransactions(final boolean value) {
+        this.nestedTransactions = value;
+        return this;
+    }
+}
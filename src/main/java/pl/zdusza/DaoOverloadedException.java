@@ -0,0 +1,28 @@
+package pl.zdusza;
+
+/**
+ * Failure of a transaction rejected by admission control because the in-flight limit and the wait queue were full.
+ * The transaction did not touch the database.
+ */
+public final class DaoOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int inFlightLimit;
+
+    private final int maxQueued;
+
+    public DaoOverloadedException(final int inFlightLimit, final int maxQueued) {
+        super("Dao overloaded: " + inFlightLimit + " transactions in flight and " + maxQueued + " queued");
+        this.inFlightLimit = inFlightLimit;
+        this.maxQueued = maxQueued;
+    }
+
+    public int getInFlightLimit() {
+        return inFlightLimit;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+}
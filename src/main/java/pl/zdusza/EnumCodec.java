@@ -0,0 +1,155 @@
+package pl.zdusza;
+
+import io.vertx.core.json.JsonArray;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decodes enum columns of result set rows without creating intermediate Strings. Text values are matched like in
+ * {@link EnumParser#parse(String, Class)}, straight from a CharSequence or from ASCII bytes returned by the driver,
+ * and integer values through a table of codes, the ordinals unless given otherwise. Unknown values decode to null.
+ */
+public final class EnumCodec<T extends Enum<T>> {
+
+    private static final ClassValue<EnumCodec<?>> ORDINAL_CODECS = new ClassValue<EnumCodec<?>>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected EnumCodec<?> computeValue(final Class<?> type) {
+            return new EnumCodec(type, null);
+        }
+    };
+
+    private static final int SLOTS_PER_CONSTANT = 2;
+
+    private static final int NONE = -1;
+
+    private final EnumTable<T> table;
+
+    private final int[] codes;
+
+    private final int[] slotCodes;
+
+    private final int[] slotOrdinals;
+
+    private final int mask;
+
+    private EnumCodec(final Class<T> clazz, final ToIntFunction<T> code) {
+        this.table = EnumTable.of(clazz);
+        this.codes = new int[table.size()];
+        final int capacity = Integer.highestOneBit(Math.max(1, table.size() * SLOTS_PER_CONSTANT - 1)) << 1;
+        this.slotCodes = new int[capacity];
+        this.slotOrdinals = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slotOrdinals, NONE);
+        for (int ordinal = 0; ordinal < table.size(); ordinal++) {
+            codes[ordinal] = code == null ? ordinal : code.applyAsInt(table.constant(ordinal));
+            this.put(codes[ordinal], ordinal);
+        }
+    }
+
+    /**
+     * Returns the shared codec of the enum class, decoding integers as ordinals.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Enum<T>> EnumCodec<T> of(final Class<T> clazz) {
+        return (EnumCodec<T>) ORDINAL_CODECS.get(clazz);
+    }
+
+    /**
+     * Creates a codec decoding integers as the given codes of the constants, which have to be unique. Meant to be
+     * created once and kept in a constant.
+     */
+    public static <T extends Enum<T>> EnumCodec<T> of(final Class<T> clazz, final ToIntFunction<T> code) {
+        return new EnumCodec<>(clazz, code);
+    }
+
+    public T decode(final CharSequence value) {
+        return value == null ? null : this.constant(table.ordinal(value));
+    }
+
+    /**
+     * Decodes the ASCII text stored in the given part of the array.
+     */
+    public T decode(final byte[] bytes, final int offset, final int length) {
+        return this.constant(table.ordinal(bytes, offset, length));
+    }
+
+    public T decode(final int code) {
+        for (int slot = spread(code) & mask; slotOrdinals[slot] != NONE; slot = (slot + 1) & mask) {
+            if (slotCodes[slot] == code) {
+                return table.constant(slotOrdinals[slot]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a column value as returned in result set rows: text, an integral number or ASCII bytes. Numbers with a
+     * fractional part are rejected with IllegalArgumentException instead of being truncated to a code.
+     */
+    public T decode(final Object value) {
+        if (value instanceof CharSequence) {
+            return this.decode((CharSequence) value);
+        }
+        if (value instanceof Number) {
+            return this.decodeNumber((Number) value);
+        }
+        if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            return this.decode(bytes, 0, bytes.length);
+        }
+        return null;
+    }
+
+    private T decodeNumber(final Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            final double number = value.doubleValue();
+            if (number != Math.rint(number)) {
+                throw new IllegalArgumentException("Enum code must be integral: " + value);
+            }
+        } else if (value instanceof BigDecimal) {
+            final BigDecimal number = (BigDecimal) value;
+            if (number.signum() != 0 && number.stripTrailingZeros().scale() > 0) {
+                throw new IllegalArgumentException("Enum code must be integral: " + value);
+            }
+            return this.decodeNumber(number.toBigInteger());
+        }
+        if (value instanceof BigInteger) {
+            final BigInteger number = (BigInteger) value;
+            return number.bitLength() < Integer.SIZE ? this.decode(number.intValue()) : null;
+        }
+        final long code = value.longValue();
+        return code == (int) code ? this.decode((int) code) : null;
+    }
+
+    public T decode(final JsonArray row, final int column) {
+        return this.decode(row.getValue(column));
+    }
+
+    public int code(final T value) {
+        return codes[value.ordinal()];
+    }
+
+    private void put(final int code, final int ordinal) {
+        int slot = spread(code) & mask;
+        while (slotOrdinals[slot] != NONE) {
+            if (slotCodes[slot] == code) {
+                throw new IllegalArgumentException("Duplicated enum code: " + code);
+            }
+            slot = (slot + 1) & mask;
+        }
+        slotCodes[slot] = code;
+        slotOrdinals[slot] = ordinal;
+    }
+
+    private T constant(final int ordinal) {
+        return ordinal == NONE ? null : table.constant(ordinal);
+    }
+
+    private static int spread(final int code) {
+        return code ^ (code >>> (Integer.SIZE / 2));
+    }
+}
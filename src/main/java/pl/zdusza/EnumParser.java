@@ -2,31 +2,42 @@ package pl.zdusza;
 
 import org.apache.commons.text.WordUtils;
 
-import java.util.Arrays;
 import java.util.Optional;
 
 public final class EnumParser {
 
+    private static final String EMPTY_FORMAT = "[]";
+
     private EnumParser() {
     }
 
+    /**
+     * Parses the constant name ignoring case, with '-' in place of '_' or in camelCase, without allocating.
+     */
     public static <T extends Enum<T>> Optional<T> parse(final String value, final Class<T> clazz) {
-        try {
-            return Optional.of(Enum.valueOf(clazz, value.replace("-", "_").toUpperCase()));
-        } catch (IllegalArgumentException e) {
-            return Optional.empty();
-        }
+        return EnumTable.of(clazz).parse(value);
     }
 
+    /**
+     * Formats the values as a list of lower case names with '-' in place of '_'. The result is computed once for the
+     * whole universe of constants and for arrays passed repeatedly, and returned interned.
+     */
     public static <T extends Enum<T>> String format(final T[] values) {
-        return Arrays.toString(Arrays
-                .stream(values)
-                .map(v -> v.name().replace("_", "-").toLowerCase())
-                .toArray());
+        if (values.length == 0) {
+            return EMPTY_FORMAT;
+        }
+        return EnumTable.of(values[0].getDeclaringClass()).format(values);
     }
 
+    /**
+     * Returns the interned camelCase name of the constant, computed once per constant.
+     */
     public static <T extends Enum<T>> String capitalized(final T value) {
-        final String capitalized = WordUtils.capitalizeFully(value.name().replaceAll("_", " "));
+        return EnumTable.of(value.getDeclaringClass()).capitalized(value.ordinal());
+    }
+
+    static String camelCase(final String name) {
+        final String capitalized = WordUtils.capitalizeFully(name.replaceAll("_", " "));
         return (capitalized.substring(0, 1).toLowerCase()
                 + capitalized.substring(1)).replaceAll(" ", "");
     }
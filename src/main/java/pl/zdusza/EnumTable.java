@@ -0,0 +1,238 @@
+package pl.zdusza;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Lookup table of an enum class built once per class. Names are matched ignoring case and treating '-' and '_' as
+ * the same character, in the constant name form (LAST_2_D, last-2-d) as well as the camelCase form (last2D), through
+ * an open addressing hash table probed straight from the given characters. Formatted names are computed once as well:
+ * per constant, for the whole universe of constants and for a few other arrays remembered by identity. The constant
+ * name form always wins over the camelCase form of another constant, the first declared constant wins when two names
+ * match each other, and a camelCase form shared by two constants, e.g. last2D of LAST2_D and LAST_2_D, matches none.
+ */
+final class EnumTable<T extends Enum<T>> {
+
+    private static final ClassValue<EnumTable<?>> TABLES = new ClassValue<EnumTable<?>>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected EnumTable<?> computeValue(final Class<?> type) {
+            return new EnumTable(type);
+        }
+    };
+
+    private static final int HASH_MULTIPLIER = 31;
+
+    private static final int SLOTS_PER_CONSTANT = 4;
+
+    private static final int NOT_FOUND = -1;
+
+    private static final int MAX_FORMATTED_ARRAYS = 16;
+
+    private final T[] constants;
+
+    private final Optional<T>[] optionals;
+
+    private final String[] keys;
+
+    private final int[] ordinals;
+
+    private final int mask;
+
+    private final String[] kebabCases;
+
+    private final String[] camelCases;
+
+    private final String format;
+
+    private volatile Map<Object, Formatted> formatted = Collections.emptyMap();
+
+    @SuppressWarnings("unchecked")
+    private EnumTable(final Class<T> clazz) {
+        this.constants = clazz.getEnumConstants();
+        this.optionals = new Optional[constants.length];
+        final int capacity = Integer.highestOneBit(Math.max(1, constants.length * SLOTS_PER_CONSTANT - 1)) << 1;
+        this.keys = new String[capacity];
+        this.ordinals = new int[capacity];
+        this.mask = capacity - 1;
+        for (T constant : constants) {
+            optionals[constant.ordinal()] = Optional.of(constant);
+            this.put(fold(constant.name()), constant.ordinal());
+        }
+        this.kebabCases = new String[constants.length];
+        this.camelCases = new String[constants.length];
+        for (T constant : constants) {
+            kebabCases[constant.ordinal()] = constant.name().replace("_", "-").toLowerCase().intern();
+            camelCases[constant.ordinal()] = EnumParser.camelCase(constant.name()).intern();
+            this.put(fold(camelCases[constant.ordinal()]), constant.ordinal());
+        }
+        this.format = this.join(constants).intern();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Enum<T>> EnumTable<T> of(final Class<T> clazz) {
+        return (EnumTable<T>) TABLES.get(clazz);
+    }
+
+    Optional<T> parse(final CharSequence value) {
+        final int ordinal = this.ordinal(value);
+        return ordinal == NOT_FOUND ? Optional.empty() : optionals[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the constant matching the value, -1 when none does.
+     */
+    int ordinal(final CharSequence value) {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            hash = HASH_MULTIPLIER * hash + fold(value.charAt(i));
+        }
+        for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(keys[slot], value)) {
+                return ordinals[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the ordinal of the constant matching the ASCII bytes, -1 when none does or a byte is not ASCII.
+     */
+    int ordinal(final byte[] bytes, final int offset, final int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return NOT_FOUND;
+            }
+            hash = HASH_MULTIPLIER * hash + fold((char) bytes[i]);
+        }
+        for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(keys[slot], bytes, offset, length)) {
+                return ordinals[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    T constant(final int ordinal) {
+        return constants[ordinal];
+    }
+
+    int size() {
+        return constants.length;
+    }
+
+    String capitalized(final int ordinal) {
+        return camelCases[ordinal];
+    }
+
+    /**
+     * Returns the formatted names of the values. The universe of constants, in declaration order, is formatted once
+     * whatever array holds it, other arrays are remembered by identity and checked against a copy of their contents.
+     */
+    String format(final T[] values) {
+        if (Arrays.equals(values, constants)) {
+            return format;
+        }
+        final Formatted remembered = formatted.get(values);
+        if (remembered != null && Arrays.equals(values, remembered.values)) {
+            return remembered.format;
+        }
+        final String joined = this.join(values).intern();
+        this.remember(values, joined);
+        return joined;
+    }
+
+    private synchronized void remember(final T[] values, final String joined) {
+        if (formatted.size() < MAX_FORMATTED_ARRAYS) {
+            final Map<Object, Formatted> copy = new IdentityHashMap<>(formatted);
+            copy.put(values, new Formatted(values.clone(), joined));
+            this.formatted = copy;
+        }
+    }
+
+    private String join(final T[] values) {
+        final StringBuilder joined = new StringBuilder().append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                joined.append(", ");
+            }
+            joined.append(kebabCases[values[i].ordinal()]);
+        }
+        return joined.append(']').toString();
+    }
+
+    private void put(final String key, final int ordinal) {
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                if (ordinals[slot] != ordinal && !this.isName(slot)) {
+                    ordinals[slot] = NOT_FOUND;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        ordinals[slot] = ordinal;
+    }
+
+    private boolean isName(final int slot) {
+        return ordinals[slot] != NOT_FOUND && keys[slot].equals(fold(constants[ordinals[slot]].name()));
+    }
+
+    private static boolean matches(final String key, final CharSequence value) {
+        if (key.length() != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != fold(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(final String key, final byte[] bytes, final int offset, final int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != fold((char) bytes[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String fold(final String value) {
+        final StringBuilder folded = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            folded.append(fold(value.charAt(i)));
+        }
+        return folded.toString();
+    }
+
+    static char fold(final char c) {
+        return c == '-' ? '_' : Character.toUpperCase(c);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> (Integer.SIZE / 2));
+    }
+
+    private static final class Formatted {
+
+        private final Object[] values;
+
+        private final String format;
+
+        private Formatted(final Object[] values, final String format) {
+            this.values = values;
+            this.format = format;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pl.zdusza;
+
+/**
+ * Count-min sketch of 4 bit counters estimating how often keys were recently used. All counters are halved once
+ * ten times as many increments as the cache holds entries were counted, so old popularity fades out.
+ */
+final class FrequencySketch {
+
+    private static final int[] SEEDS = {0x97cb3127, 0x9e3779b9, 0x7f4a7c15, 0xc2b2ae35};
+
+    private static final int MAX_COUNT = 15;
+
+    private static final int SAMPLE_FACTOR = 10;
+
+    private final byte[] counters;
+
+    private final int width;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(final int maximumSize) {
+        this.width = Integer.highestOneBit(Math.max(2, maximumSize) - 1) << 1;
+        this.counters = new byte[SEEDS.length * width];
+        this.sampleSize = SAMPLE_FACTOR * maximumSize;
+    }
+
+    void increment(final int hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            final int index = this.index(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            this.reset();
+        }
+    }
+
+    int frequency(final int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counters[this.index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int index(final int hash, final int row) {
+        int spread = (hash ^ SEEDS[row]) * SEEDS[row];
+        spread ^= spread >>> (Integer.SIZE / 2);
+        return row * width + (spread & (width - 1));
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>= 1;
+        }
+        additions /= 2;
+    }
+}
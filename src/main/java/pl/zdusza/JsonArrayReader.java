@@ -0,0 +1,90 @@
+package pl.zdusza;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the objects of a JSON array, parsed one by one from the stream so memory use does not depend on the
+ * size of the array. The stream is closed when the end of the array is reached or by {@link #close()}. Reading
+ * blocks, so on an event loop it belongs in executeBlocking.
+ */
+public final class JsonArrayReader implements Iterator<JsonObject>, AutoCloseable {
+
+    private final String path;
+
+    private final JsonParser parser;
+
+    private JsonToken token;
+
+    JsonArrayReader(final String path, final InputStream inputStream) throws IOException {
+        this.path = path;
+        this.parser = Json.mapper.getFactory().createParser(inputStream);
+        boolean array = false;
+        try {
+            array = parser.nextToken() == JsonToken.START_ARRAY;
+        } finally {
+            if (!array) {
+                parser.close();
+            }
+        }
+        if (!array) {
+            throw new RuntimeException("Not a JSON array: " + path);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (token == null) {
+            token = this.nextToken();
+        }
+        return token == JsonToken.START_OBJECT;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        token = null;
+        try {
+            return new JsonObject(parser.readValueAs(Map.class));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read file: " + path);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to close file: " + path);
+        }
+    }
+
+    private JsonToken nextToken() {
+        final JsonToken next;
+        try {
+            next = parser.nextToken();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read file: " + path);
+        }
+        if (next == JsonToken.END_ARRAY) {
+            this.close();
+            return next;
+        }
+        if (next != JsonToken.START_OBJECT) {
+            throw new RuntimeException("Not a JSON object in array: " + path);
+        }
+        return next;
+    }
+}
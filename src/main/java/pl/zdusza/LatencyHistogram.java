@@ -0,0 +1,109 @@
+package pl.zdusza;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log-linear histogram of nanosecond latencies in the spirit of HdrHistogram: every power of two range is
+ * split into 32 linear sub-buckets, which keeps the relative error of reported values around 3%.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = Long.SIZE - SUB_BUCKET_BITS;
+
+    private static final double P50 = 50.0;
+
+    private static final double P90 = 90.0;
+
+    private static final double P99 = 99.0;
+
+    private static final double P999 = 99.9;
+
+    private static final double HUNDRED_PERCENT = 100.0;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT * SUB_BUCKET_COUNT);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        final long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * Returns the highest value equivalent to the given percentile, in nanoseconds.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / HUNDRED_PERCENT * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("count", getCount())
+                .put("meanNanos", getMean())
+                .put("p50Nanos", getValueAtPercentile(P50))
+                .put("p90Nanos", getValueAtPercentile(P90))
+                .put("p99Nanos", getValueAtPercentile(P99))
+                .put("p999Nanos", getValueAtPercentile(P999))
+                .put("maxNanos", getMax());
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long highestEquivalentValue(final int index) {
+        final int bucket = index / SUB_BUCKET_COUNT;
+        final long subBucket = index % SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        return ((subBucket + SUB_BUCKET_COUNT + 1) << (bucket - 1)) - 1;
+    }
+}
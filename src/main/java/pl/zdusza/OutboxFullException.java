@@ -0,0 +1,21 @@
+package pl.zdusza;
+
+/**
+ * Failure of a write rejected by a {@link WriteBehindOutbox} because maxPending keys were already waiting for a
+ * flush. The write was not queued.
+ */
+public final class OutboxFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxPending;
+
+    public OutboxFullException(final int maxPending) {
+        super("Outbox full: " + maxPending + " writes pending");
+        this.maxPending = maxPending;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+}
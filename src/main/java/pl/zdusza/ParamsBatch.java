@@ -0,0 +1,160 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.UpdateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One statement executed for many parameter tuples. The driver's own batch goes first, which the PostgreSQL JDBC
+ * driver sends as a single pipelined round trip. Drivers without batches get single tuple INSERT ... VALUES
+ * statements rewritten into multi row VALUES of at most {@link #MAX_PARAMS_PER_STATEMENT} parameters, anything else
+ * runs tuple by tuple.
+ */
+final class ParamsBatch {
+
+    static final int MAX_PARAMS_PER_STATEMENT = 32767;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParamsBatch.class);
+
+    private static final Pattern INSERT_VALUES = Pattern.compile(
+            "^(\\s*INSERT\\s+INTO\\s.+?\\sVALUES\\s*)(\\([^()'\"?]*\\?[^()'\"]*\\))([^?]*)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final int PREFIX_GROUP = 1;
+
+    private static final int TUPLE_GROUP = 2;
+
+    private static final int SUFFIX_GROUP = 3;
+
+    private static final String TUPLE_SEPARATOR = ", ";
+
+    private static final Integer SUCCESS_NO_INFO = Statement.SUCCESS_NO_INFO;
+
+    private final SQLConnection connection;
+
+    private final String sql;
+
+    private final List<JsonArray> params;
+
+    private final Future<List<Integer>> result = Future.future();
+
+    private final List<Integer> updated;
+
+    ParamsBatch(final SQLConnection connection, final String sql, final List<JsonArray> params) {
+        this.connection = connection;
+        this.sql = sql;
+        this.params = params;
+        this.updated = new ArrayList<>(params.size());
+    }
+
+    Future<List<Integer>> execute() {
+        if (params.isEmpty()) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        try {
+            connection.batchWithParams(sql, params, batchAsyncCall -> {
+                if (batchAsyncCall.failed() && batchAsyncCall.cause() instanceof UnsupportedOperationException) {
+                    this.withoutDriverBatch();
+                } else if (batchAsyncCall.failed()) {
+                    this.failed(sql, params, batchAsyncCall.cause());
+                } else {
+                    result.tryComplete(batchAsyncCall.result());
+                }
+            });
+        } catch (UnsupportedOperationException e) {
+            this.withoutDriverBatch();
+        }
+        return result;
+    }
+
+    private void withoutDriverBatch() {
+        final Matcher insert = INSERT_VALUES.matcher(sql);
+        final int arity = insert.matches() && count(insert.group(PREFIX_GROUP), '?') == 0
+                ? count(insert.group(TUPLE_GROUP), '?')
+                : 0;
+        if (arity > 0 && params.stream().allMatch(tuple -> tuple.size() == arity)) {
+            this.rewritten(insert.group(PREFIX_GROUP), insert.group(TUPLE_GROUP), insert.group(SUFFIX_GROUP),
+                    MAX_PARAMS_PER_STATEMENT / arity);
+        } else {
+            this.sequential();
+        }
+    }
+
+    private void rewritten(final String prefix, final String tuple, final String suffix, final int rowsPerStatement) {
+        final int from = updated.size();
+        if (from == params.size()) {
+            result.tryComplete(updated);
+            return;
+        }
+        final int to = Math.min(params.size(), from + rowsPerStatement);
+        final StringBuilder statement = new StringBuilder(prefix).append(tuple);
+        final JsonArray statementParams = params.get(from).copy();
+        for (int i = from + 1; i < to; i++) {
+            statement.append(TUPLE_SEPARATOR).append(tuple);
+            statementParams.addAll(params.get(i));
+        }
+        final String rewrittenSql = statement.append(suffix).toString();
+        this.update(rewrittenSql, statementParams, updateResult -> {
+            final int rows = to - from;
+            final Integer count = updateResult.getUpdated() == rows ? Integer.valueOf(1) : SUCCESS_NO_INFO;
+            for (int i = 0; i < rows; i++) {
+                updated.add(count);
+            }
+            this.rewritten(prefix, tuple, suffix, rowsPerStatement);
+        });
+    }
+
+    private void sequential() {
+        final int index = updated.size();
+        if (index == params.size()) {
+            result.tryComplete(updated);
+            return;
+        }
+        this.update(sql, params.get(index), updateResult -> {
+            updated.add(updateResult.getUpdated());
+            this.sequential();
+        });
+    }
+
+    private void update(final String statement,
+                        final JsonArray statementParams,
+                        final Consumer<UpdateResult> next) {
+        try {
+            connection.updateWithParams(statement, statementParams, updateAsyncCall -> {
+                if (updateAsyncCall.succeeded()) {
+                    next.accept(updateAsyncCall.result());
+                } else {
+                    this.failed(statement, statementParams, updateAsyncCall.cause());
+                }
+            });
+        } catch (RuntimeException e) {
+            this.failed(statement, statementParams, e);
+        }
+    }
+
+    private void failed(final String statement, final Object statementParams, final Throwable cause) {
+        LOGGER.error("Query: {} failed for params: {}", statement, statementParams.toString());
+        result.tryFail(cause);
+    }
+
+    private static int count(final String value, final char c) {
+        int count = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,319 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Read through cache of query results of a {@link Dao}, keyed by the SQL and its params. Concurrent misses of the
+ * same key share one query run in a read only transaction, or in a transaction on the primary while one of the tags
+ * of the query was invalidated within the replica lag, so a lagging replica does not refill the cache with the rows
+ * the write replaced. Results are served until they expire or the cache is
+ * full: new results enter a small window and a result leaving the window replaces the least recently used one of
+ * the main region only when it was looked up more often, as estimated by a {@link FrequencySketch}, so one-off
+ * queries do not push popular results out. Queries declare the tables they read as tags, and transactions run
+ * through {@link #doInTransactionPLTZ(Function, Future, String...)} declare the tags they write: the results of
+ * those tags are dropped after the commit, never on rollback. Cached result sets are shared and must not be modified.
+ */
+public class QueryCache {
+
+    private static final int WINDOW_DIVISOR = 100;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Dao dao;
+
+    private final long expireAfterWriteNanos;
+
+    private final long replicaLagNanos;
+
+    private final int windowSize;
+
+    private final int mainSize;
+
+    private final FrequencySketch sketch;
+
+    private final QueryCacheStats stats = new QueryCacheStats();
+
+    private final LinkedHashMap<Key, Entry> window = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private final LinkedHashMap<Key, Entry> main = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private final Map<Key, List<Future<ResultSet>>> loading = new HashMap<>();
+
+    private final Map<String, Set<Key>> tagged = new HashMap<>();
+
+    private final Map<String, Long> tagVersions = new HashMap<>();
+
+    private final Map<String, Long> tagInvalidations = new HashMap<>();
+
+    public QueryCache(final Dao dao, final QueryCacheOptions options) {
+        this.dao = dao;
+        this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(options.getExpireAfterWrite());
+        this.replicaLagNanos = TimeUnit.MILLISECONDS.toNanos(options.getReplicaLag());
+        this.windowSize = Math.max(1, options.getMaximumSize() / WINDOW_DIVISOR);
+        this.mainSize = options.getMaximumSize() - windowSize;
+        this.sketch = new FrequencySketch(options.getMaximumSize());
+    }
+
+    public final QueryCacheStats getStats() {
+        return stats;
+    }
+
+    public final synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    /**
+     * Returns the cached result of the query or loads it, the tags name the tables the query reads.
+     */
+    public final Future<ResultSet> queryWithParams(final String sql, final JsonArray params, final String... tags) {
+        final String[] readTags = tags.clone();
+        final Key key = new Key(sql, params == null ? new JsonArray() : params.copy());
+        final Future<ResultSet> future = Future.future();
+        final long[] versions;
+        final boolean fromPrimary;
+        synchronized (this) {
+            sketch.increment(key.hashCode());
+            final Entry entry = this.lookup(key);
+            if (entry != null) {
+                stats.hit();
+                return Future.succeededFuture(entry.resultSet);
+            }
+            stats.miss();
+            final List<Future<ResultSet>> waiting = loading.get(key);
+            if (waiting != null) {
+                waiting.add(future);
+                return future;
+            }
+            final List<Future<ResultSet>> loaders = new ArrayList<>();
+            loaders.add(future);
+            loading.put(key, loaders);
+            versions = this.versions(readTags);
+            fromPrimary = this.recentlyInvalidated(readTags);
+        }
+        stats.load();
+        final Future<ResultSet> load = Future.future();
+        load.setHandler(loadAsyncCall -> this.loaded(key, readTags, versions, loadAsyncCall));
+        final Function<SQLConnection, Future<ResultSet>> loader = connection -> {
+            final Future<ResultSet> result = Future.future();
+            connection.queryWithParams(sql, key.params, result.completer());
+            return result;
+        };
+        if (fromPrimary) {
+            dao.doInTransactionPLTZ(loader, load);
+        } else {
+            dao.doInReadOnlyTransactionPLTZ(loader, load);
+        }
+        return future;
+    }
+
+    /**
+     * Runs the transaction and drops the results of the given tags once it committed. With nested transactions
+     * enabled they are dropped right after the commit of the outermost transaction, otherwise when the future of the
+     * transaction succeeds.
+     */
+    public final <T> void doInTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
+                                              final Future<T> future,
+                                              final String... tags) {
+        final Runnable invalidation = () -> this.invalidate(tags);
+        final AtomicBoolean afterCommit = new AtomicBoolean();
+        final Future<T> result = Future.future();
+        result.setHandler(transactionAsyncCall -> {
+            if (transactionAsyncCall.succeeded() && !afterCommit.get()) {
+                invalidation.run();
+            }
+            future.completer().handle(transactionAsyncCall);
+        });
+        dao.doInTransactionPLTZ(connection -> {
+            afterCommit.set(dao.afterCommit(invalidation));
+            return function.apply(connection);
+        }, result);
+    }
+
+    /**
+     * Drops the results of the tags, also results of loads still running.
+     */
+    public final synchronized void invalidate(final String... tags) {
+        final long now = System.nanoTime();
+        for (String tag : tags) {
+            tagVersions.merge(tag, 1L, Long::sum);
+            tagInvalidations.put(tag, now);
+            final Set<Key> keys = tagged.remove(tag);
+            if (keys == null) {
+                continue;
+            }
+            for (Key key : keys) {
+                if (this.remove(key) != null) {
+                    stats.invalidation();
+                }
+            }
+        }
+    }
+
+    private void loaded(final Key key,
+                        final String[] tags,
+                        final long[] versions,
+                        final AsyncResult<ResultSet> loadAsyncCall) {
+        final List<Future<ResultSet>> waiting;
+        synchronized (this) {
+            waiting = loading.remove(key);
+            if (loadAsyncCall.succeeded() && Arrays.equals(versions, this.versions(tags))) {
+                final long expiresAtNanos = System.nanoTime() + expireAfterWriteNanos;
+                this.store(key, new Entry(key, tags, loadAsyncCall.result(), expiresAtNanos));
+            }
+        }
+        for (Future<ResultSet> future : waiting) {
+            future.completer().handle(loadAsyncCall);
+        }
+    }
+
+    private Entry lookup(final Key key) {
+        Entry entry = window.get(key);
+        if (entry == null) {
+            entry = main.get(key);
+        }
+        if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+            this.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private void store(final Key key, final Entry entry) {
+        this.remove(key);
+        window.put(key, entry);
+        this.tag(entry);
+        if (window.size() <= windowSize) {
+            return;
+        }
+        final Iterator<Entry> eldest = window.values().iterator();
+        final Entry candidate = eldest.next();
+        eldest.remove();
+        if (main.size() < mainSize) {
+            main.put(candidate.key, candidate);
+            return;
+        }
+        final Entry victim = mainSize == 0 ? null : main.values().iterator().next();
+        if (victim != null && sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+            this.remove(victim.key);
+            main.put(candidate.key, candidate);
+        } else {
+            this.untag(candidate);
+        }
+        stats.eviction();
+    }
+
+    private Entry remove(final Key key) {
+        Entry entry = window.remove(key);
+        if (entry == null) {
+            entry = main.remove(key);
+        }
+        if (entry != null) {
+            this.untag(entry);
+        }
+        return entry;
+    }
+
+    private void tag(final Entry entry) {
+        for (String tag : entry.tags) {
+            tagged.computeIfAbsent(tag, t -> new HashSet<>()).add(entry.key);
+        }
+    }
+
+    private void untag(final Entry entry) {
+        for (String tag : entry.tags) {
+            final Set<Key> keys = tagged.get(tag);
+            if (keys != null && keys.remove(entry.key) && keys.isEmpty()) {
+                tagged.remove(tag);
+            }
+        }
+    }
+
+    private boolean recentlyInvalidated(final String[] tags) {
+        final long now = System.nanoTime();
+        for (String tag : tags) {
+            final Long invalidatedNanos = tagInvalidations.get(tag);
+            if (invalidatedNanos != null && now - invalidatedNanos < replicaLagNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long[] versions(final String[] tags) {
+        final long[] versions = new long[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            versions[i] = tagVersions.getOrDefault(tags[i], 0L);
+        }
+        return versions;
+    }
+
+    private static final class Key {
+
+        private final String sql;
+
+        private final JsonArray params;
+
+        private final int hash;
+
+        private Key(final String sql, final JsonArray params) {
+            this.sql = sql;
+            this.params = params;
+            this.hash = Objects.hash(sql, params);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return sql.equals(key.sql) && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+
+        private final String[] tags;
+
+        private final ResultSet resultSet;
+
+        private final long expiresAtNanos;
+
+        private Entry(final Key key, final String[] tags, final ResultSet resultSet, final long expiresAtNanos) {
+            this.key = key;
+            this.tags = tags;
+            this.resultSet = resultSet;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pl.zdusza;
+
+/**
+ * Settings of a {@link QueryCache}: the maximum number of cached results, how long a result is served after it was
+ * loaded and how long after an invalidation results are loaded from the primary.
+ */
+public final class QueryCacheOptions {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static final long DEFAULT_EXPIRE_AFTER_WRITE = 60000;
+
+    private static final long DEFAULT_REPLICA_LAG = 1000;
+
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+    private long expireAfterWrite = DEFAULT_EXPIRE_AFTER_WRITE;
+
+    private long replicaLag = DEFAULT_REPLICA_LAG;
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public QueryCacheOptions setMaximumSize(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        this.maximumSize = value;
+        return this;
+    }
+
+    public long getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    /**
+     * Time in milliseconds after which a loaded result is no longer served.
+     */
+    public QueryCacheOptions setExpireAfterWrite(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Expire after write must be positive");
+        }
+        this.expireAfterWrite = value;
+        return this;
+    }
+
+    public long getReplicaLag() {
+        return replicaLag;
+    }
+
+    /**
+     * Upper bound of the lag of read replicas in milliseconds. Results of tags invalidated within that time are loaded
+     * from the primary, a replica may not have applied the write yet. 0 always loads from replicas.
+     */
+    public QueryCacheOptions setReplicaLag(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Replica lag must not be negative");
+        }
+        this.replicaLag = value;
+        return this;
+    }
+}
@@ -0,0 +1,68 @@
+package pl.zdusza;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class QueryCacheStats {
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void load() {
+        loads.increment();
+    }
+
+    void eviction() {
+        evictions.increment();
+    }
+
+    void invalidation() {
+        invalidations.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of lookups not served from the cache, including the ones joining a load already running.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of queries executed on the database.
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * Number of results dropped by the size bound, including candidates not admitted.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of results dropped because a transaction wrote their tags.
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+}
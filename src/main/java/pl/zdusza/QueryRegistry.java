@@ -0,0 +1,149 @@
+package pl.zdusza;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable map of classpath text files loaded once, in parallel, with {@link ClassPathFileResolver#textFile}.
+ * Lookups are a hash probe returning the interned text. Files are keyed by their absolute classpath path, the same
+ * path {@link ClassPathFileResolver#textFile} takes.
+ */
+public final class QueryRegistry {
+
+    private final Map<String, String> queries;
+
+    private QueryRegistry(final Map<String, String> queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * Loads every file under the classpath directory and its subdirectories, from all classpath roots, both
+     * directories and jars.
+     */
+    public static QueryRegistry scan(final String directory) {
+        final String resource = trimSlashes(directory);
+        final Set<String> paths = new TreeSet<>();
+        try {
+            final Enumeration<URL> urls = QueryRegistry.class.getClassLoader().getResources(resource);
+            while (urls.hasMoreElements()) {
+                collect(urls.nextElement(), resource, paths);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Unable to scan directory: " + directory, e);
+        }
+        if (paths.isEmpty()) {
+            throw new RuntimeException("Missing directory on project classpath: " + directory);
+        }
+        return of(paths);
+    }
+
+    public static QueryRegistry of(final String... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    /**
+     * Loads the given files, failing on the first one missing.
+     */
+    public static QueryRegistry of(final Collection<String> paths) {
+        final ClassPathFileResolver classPathFileResolver = new ClassPathFileResolver();
+        final Map<String, String> loaded = paths.parallelStream()
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), path -> classPathFileResolver.textFile(path).intern()));
+        return new QueryRegistry(Collections.unmodifiableMap(new HashMap<>(loaded)));
+    }
+
+    public String get(final String path) {
+        final String query = queries.get(path);
+        if (query == null) {
+            throw new RuntimeException("Missing file on project classpath: " + path);
+        }
+        return query;
+    }
+
+    public boolean contains(final String path) {
+        return queries.containsKey(path);
+    }
+
+    public Set<String> paths() {
+        return queries.keySet();
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    private static void collect(final URL url, final String resource, final Set<String> paths)
+            throws IOException, URISyntaxException {
+        switch (url.getProtocol()) {
+            case "file":
+                walk(Paths.get(url.toURI()), resource, paths);
+                break;
+            case "jar":
+                collectFromJar(url.toURI(), resource, paths);
+                break;
+            default:
+                throw new RuntimeException("Unsupported classpath location: " + url);
+        }
+    }
+
+    private static void collectFromJar(final URI uri, final String resource, final Set<String> paths)
+            throws IOException {
+        FileSystem fileSystem;
+        boolean opened;
+        try {
+            fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap());
+            opened = true;
+        } catch (FileSystemAlreadyExistsException e) {
+            fileSystem = FileSystems.getFileSystem(uri);
+            opened = false;
+        }
+        try {
+            walk(fileSystem.getPath("/" + resource), resource, paths);
+        } finally {
+            if (opened) {
+                fileSystem.close();
+            }
+        }
+    }
+
+    private static void walk(final Path directory, final String resource, final Set<String> paths)
+            throws IOException {
+        final String separator = directory.getFileSystem().getSeparator();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile)
+                    .map(file -> directory.relativize(file).toString().replace(separator, "/"))
+                    .forEach(relative -> paths.add("/" + resource + "/" + relative));
+        }
+    }
+
+    private static String trimSlashes(final String directory) {
+        int start = 0;
+        int end = directory.length();
+        while (start < end && directory.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && directory.charAt(end - 1) == '/') {
+            end--;
+        }
+        return directory.substring(start, end);
+    }
+}
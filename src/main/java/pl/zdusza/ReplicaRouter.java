@@ -0,0 +1,57 @@
+package pl.zdusza;
+
+import io.vertx.ext.sql.SQLClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+final class ReplicaRouter {
+
+    private final List<SQLClient> clients;
+
+    private final DaoOptions.ReplicaSelection selection;
+
+    private final AtomicIntegerArray outstanding;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaRouter(final List<SQLClient> clients, final DaoOptions.ReplicaSelection selection) {
+        this.clients = new ArrayList<>(clients);
+        this.selection = selection;
+        this.outstanding = new AtomicIntegerArray(clients.size());
+    }
+
+    int acquire() {
+        final int replica = selection == DaoOptions.ReplicaSelection.LEAST_OUTSTANDING
+                ? this.leastOutstanding()
+                : Math.floorMod(next.getAndIncrement(), clients.size());
+        outstanding.incrementAndGet(replica);
+        return replica;
+    }
+
+    void release(final int replica) {
+        outstanding.decrementAndGet(replica);
+    }
+
+    SQLClient client(final int replica) {
+        return clients.get(replica);
+    }
+
+    int outstanding(final int replica) {
+        return outstanding.get(replica);
+    }
+
+    private int leastOutstanding() {
+        final int start = Math.floorMod(next.getAndIncrement(), clients.size());
+        int best = start;
+        for (int i = 1; i < clients.size(); i++) {
+            final int candidate = (start + i) % clients.size();
+            if (outstanding.get(candidate) < outstanding.get(best)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,131 @@
+package pl.zdusza;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Re-runs transactions failing with one of the retryable SQLSTATEs, by default serialization failures (40001) and
+ * deadlocks (40P01). Attempts are delayed by capped exponential backoff with full jitter. The whole function is run
+ * again on a fresh connection, so it must not have side effects outside of the transaction.
+ */
+public final class RetryPolicy {
+
+    public static final String SERIALIZATION_FAILURE = "40001";
+
+    public static final String DEADLOCK_DETECTED = "40P01";
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final long DEFAULT_INITIAL_BACKOFF = 10;
+
+    private static final long DEFAULT_MAX_BACKOFF = 1000;
+
+    private static final Pattern SQL_STATE_IN_MESSAGE = Pattern.compile("SQLSTATE[^0-9A-Z]*([0-9A-Z]{5})");
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+
+    private Set<String> retryableSqlStates =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(SERIALIZATION_FAILURE, DEADLOCK_DETECTED)));
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Maximum number of attempts including the first one.
+     */
+    public RetryPolicy setMaxAttempts(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Max attempts must be positive");
+        }
+        this.maxAttempts = value;
+        return this;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * Upper bound of the delay before the first retry in milliseconds, doubled for every next one.
+     */
+    public RetryPolicy setInitialBackoff(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Initial backoff must be positive");
+        }
+        this.initialBackoff = value;
+        return this;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Cap of the delay before a retry in milliseconds.
+     */
+    public RetryPolicy setMaxBackoff(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Max backoff must be positive");
+        }
+        this.maxBackoff = value;
+        return this;
+    }
+
+    public Set<String> getRetryableSqlStates() {
+        return retryableSqlStates;
+    }
+
+    public RetryPolicy setRetryableSqlStates(final Set<String> value) {
+        this.retryableSqlStates = Collections.unmodifiableSet(new HashSet<>(Objects.requireNonNull(value)));
+        return this;
+    }
+
+    /**
+     * Returns the SQLSTATE the failure should be retried for, null when it should not be retried.
+     */
+    String retryableSqlState(final Throwable failure) {
+        final String sqlState = sqlState(failure);
+        return sqlState != null && retryableSqlStates.contains(sqlState) ? sqlState : null;
+    }
+
+    /**
+     * Delay before the given retry, the first retry being 1, in milliseconds.
+     */
+    long backoff(final int retry) {
+        final int doublings = retry - 1;
+        final long bound = doublings >= Long.numberOfLeadingZeros(initialBackoff) - 1
+                ? maxBackoff
+                : Math.min(maxBackoff, initialBackoff << doublings);
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    static String sqlState(final Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof TransactionTimeoutException) {
+                return null;
+            }
+            if (t instanceof SQLException && ((SQLException) t).getSQLState() != null) {
+                return ((SQLException) t).getSQLState();
+            }
+            if (t.getMessage() != null) {
+                final Matcher matcher = SQL_STATE_IN_MESSAGE.matcher(t.getMessage());
+                if (matcher.find()) {
+                    return matcher.group(1);
+                }
+            }
+        }
+        return null;
+    }
+}
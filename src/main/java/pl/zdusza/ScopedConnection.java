@@ -0,0 +1,169 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.util.List;
+
+/**
+ * Connection handed to functions of a {@link TransactionScope}, handling results of its statements with the scope
+ * current.
+ */
+final class ScopedConnection implements SQLConnection {
+
+    private final SQLConnection delegate;
+
+    private final TransactionScope scope;
+
+    ScopedConnection(final SQLConnection delegate, final TransactionScope scope) {
+        this.delegate = delegate;
+        this.scope = scope;
+    }
+
+    @Override
+    public SQLConnection setAutoCommit(final boolean autoCommit, final Handler<AsyncResult<Void>> resultHandler) {
+        delegate.setAutoCommit(autoCommit, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection execute(final String sql, final Handler<AsyncResult<Void>> resultHandler) {
+        delegate.execute(sql, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection query(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+        delegate.query(sql, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStream(final String sql, final Handler<AsyncResult<SQLRowStream>> handler) {
+        delegate.queryStream(sql, scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryWithParams(final String sql,
+                                         final JsonArray params,
+                                         final Handler<AsyncResult<ResultSet>> resultHandler) {
+        delegate.queryWithParams(sql, params, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStreamWithParams(final String sql,
+                                               final JsonArray params,
+                                               final Handler<AsyncResult<SQLRowStream>> handler) {
+        delegate.queryStreamWithParams(sql, params, scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection update(final String sql, final Handler<AsyncResult<UpdateResult>> resultHandler) {
+        delegate.update(sql, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection updateWithParams(final String sql,
+                                          final JsonArray params,
+                                          final Handler<AsyncResult<UpdateResult>> resultHandler) {
+        delegate.updateWithParams(sql, params, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection call(final String sql, final Handler<AsyncResult<ResultSet>> resultHandler) {
+        delegate.call(sql, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection callWithParams(final String sql,
+                                        final JsonArray params,
+                                        final JsonArray outputs,
+                                        final Handler<AsyncResult<ResultSet>> resultHandler) {
+        delegate.callWithParams(sql, params, outputs, scoped(resultHandler));
+        return this;
+    }
+
+    @Override
+    public void close(final Handler<AsyncResult<Void>> handler) {
+        delegate.close(scoped(handler));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public SQLConnection commit(final Handler<AsyncResult<Void>> handler) {
+        delegate.commit(scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection rollback(final Handler<AsyncResult<Void>> handler) {
+        delegate.rollback(scoped(handler));
+        return this;
+    }
+
+    @SuppressWarnings("deprecation")
+    public SQLConnection setQueryTimeout(final int timeoutInSeconds) {
+        delegate.setQueryTimeout(timeoutInSeconds);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batch(final List<String> sqlStatements, final Handler<AsyncResult<List<Integer>>> handler) {
+        delegate.batch(sqlStatements, scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchWithParams(final String sqlStatement,
+                                         final List<JsonArray> args,
+                                         final Handler<AsyncResult<List<Integer>>> handler) {
+        delegate.batchWithParams(sqlStatement, args, scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchCallableWithParams(final String sqlStatement,
+                                                 final List<JsonArray> inArgs,
+                                                 final List<JsonArray> outArgs,
+                                                 final Handler<AsyncResult<List<Integer>>> handler) {
+        delegate.batchCallableWithParams(sqlStatement, inArgs, outArgs, scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection setTransactionIsolation(final TransactionIsolation isolation,
+                                                 final Handler<AsyncResult<Void>> handler) {
+        delegate.setTransactionIsolation(isolation, scoped(handler));
+        return this;
+    }
+
+    @Override
+    public SQLConnection getTransactionIsolation(final Handler<AsyncResult<TransactionIsolation>> handler) {
+        delegate.getTransactionIsolation(scoped(handler));
+        return this;
+    }
+
+    public <N> N unwrap() {
+        return delegate.unwrap();
+    }
+
+    private <R> Handler<AsyncResult<R>> scoped(final Handler<AsyncResult<R>> handler) {
+        return asyncCall -> scope.handle(handler, asyncCall);
+    }
+}
@@ -0,0 +1,126 @@
+package pl.zdusza;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Spreads transactions over independent partitions, each a {@link Dao} of its own SQLClient pool. Every Vert.x
+ * context is bound to a partition on its first transaction, round robin, and keeps using it, so event loops do not
+ * contend on a shared pool queue. A transaction finding partitionSize transactions already running on the local
+ * partition goes to the least busy partition with a free connection, or waits in the local pool when there is none.
+ * Calls made outside of a Vert.x context are spread round robin.
+ */
+public class ShardedDao {
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final String key = ShardedDao.class.getName() + "." + INSTANCES.incrementAndGet();
+
+    private final List<Dao> partitions;
+
+    private final int partitionSize;
+
+    private final AtomicIntegerArray inFlight;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicLong steals = new AtomicLong();
+
+    /**
+     * The clients should be separate pools of partitionSize connections each, for example one non shared client per
+     * event loop.
+     */
+    public ShardedDao(final Vertx vertx,
+                      final List<SQLClient> clients,
+                      final int partitionSize,
+                      final DaoOptions options) {
+        if (clients.isEmpty() || partitionSize < 1) {
+            throw new IllegalArgumentException("Partitions and partition size must be positive");
+        }
+        this.partitions = new ArrayList<>(clients.size());
+        for (SQLClient client : clients) {
+            partitions.add(new Dao(vertx, client, options));
+        }
+        this.partitionSize = partitionSize;
+        this.inFlight = new AtomicIntegerArray(clients.size());
+    }
+
+    public final int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public final Dao getPartition(final int partition) {
+        return partitions.get(partition);
+    }
+
+    /**
+     * Number of transactions run on another partition than the local one of their context.
+     */
+    public final long getSteals() {
+        return steals.get();
+    }
+
+    public final <T> void doInTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
+                                              final Future<T> future) {
+        this.route(future, (dao, routed) -> dao.doInTransactionPLTZ(function, routed));
+    }
+
+    public final <T> void doInTransactionPLTZ(final Function<SQLConnection, Future<T>> function,
+                                              final long timeoutMillis,
+                                              final Future<T> future) {
+        this.route(future, (dao, routed) -> dao.doInTransactionPLTZ(function, timeoutMillis, routed));
+    }
+
+    private <T> void route(final Future<T> future, final BiConsumer<Dao, Future<T>> call) {
+        final int partition = this.partition();
+        final Future<T> routed = Future.future();
+        routed.setHandler(asyncCall -> {
+            inFlight.decrementAndGet(partition);
+            future.completer().handle(asyncCall);
+        });
+        call.accept(partitions.get(partition), routed);
+    }
+
+    private int partition() {
+        final int local = this.local();
+        if (inFlight.get(local) >= partitionSize) {
+            int best = local;
+            for (int i = 0; i < partitions.size(); i++) {
+                if (inFlight.get(i) < inFlight.get(best)) {
+                    best = i;
+                }
+            }
+            if (best != local && inFlight.get(best) < partitionSize) {
+                steals.incrementAndGet();
+                inFlight.incrementAndGet(best);
+                return best;
+            }
+        }
+        inFlight.incrementAndGet(local);
+        return local;
+    }
+
+    private int local() {
+        final Context context = Vertx.currentContext();
+        if (context == null) {
+            return Math.floorMod(next.getAndIncrement(), partitions.size());
+        }
+        Integer partition = context.get(key);
+        if (partition == null) {
+            partition = Math.floorMod(next.getAndIncrement(), partitions.size());
+            context.put(key, partition);
+        }
+        return partition;
+    }
+}
@@ -0,0 +1,200 @@
+package pl.zdusza;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.sql.SQLConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A managed transaction, or a unit of work nested in one, seen as current by code running in it. A Vert.x context
+ * serves many requests at once, so the scope is current only while the function of the transaction runs and while
+ * callbacks of statements run on its connection are handled, it is kept in the context local data just for that
+ * time. Nested units run one at a time under a savepoint on the same connection: the savepoint is released when the
+ * unit succeeds and rolled back to when it fails, leaving the enclosing transaction usable. Actions registered to run
+ * after the commit of a nested unit move to the enclosing scope when it succeeds and are dropped when it fails.
+ */
+final class TransactionScope {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionScope.class);
+
+    private static final String SAVEPOINT;
+
+    private static final String RELEASE_SAVEPOINT;
+
+    private static final String ROLLBACK_TO_SAVEPOINT;
+
+    static {
+        final ClassPathFileResolver classPathFileResolver = new ClassPathFileResolver();
+        SAVEPOINT = classPathFileResolver.textFile("/db/queries/Savepoint.sql");
+        RELEASE_SAVEPOINT = classPathFileResolver.textFile("/db/queries/ReleaseSavepoint.sql");
+        ROLLBACK_TO_SAVEPOINT = classPathFileResolver.textFile("/db/queries/RollbackToSavepoint.sql");
+    }
+
+    private final String key;
+
+    private final SQLConnection delegate;
+
+    private final SQLConnection connection;
+
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+
+    private final List<Runnable> afterCommit = new ArrayList<>(0);
+
+    private boolean busy;
+
+    private boolean closed;
+
+    TransactionScope(final String key, final SQLConnection connection) {
+        this.key = key;
+        this.delegate = connection;
+        this.connection = new ScopedConnection(connection, this);
+    }
+
+    /**
+     * Returns the open scope current on the calling context, null when there is none.
+     */
+    static TransactionScope current(final String key) {
+        final Context context = Vertx.currentContext();
+        if (context == null) {
+            return null;
+        }
+        final TransactionScope scope = context.get(key);
+        return scope == null || scope.closed ? null : scope;
+    }
+
+    /**
+     * Runs the function of the transaction with this scope current.
+     */
+    <T> Future<T> apply(final Function<SQLConnection, Future<T>> function) {
+        final Context context = Vertx.currentContext();
+        final Object previous = this.enter(context);
+        try {
+            return function.apply(connection);
+        } finally {
+            this.exit(context, previous);
+        }
+    }
+
+    /**
+     * Runs the function under a savepoint once units nested before it finished.
+     */
+    <T> void nested(final Function<SQLConnection, Future<T>> function, final Future<T> future) {
+        if (busy) {
+            waiting.add(() -> this.nested(function, future));
+            return;
+        }
+        this.busy = true;
+        final Future<T> unit = Future.future();
+        unit.setHandler(unitAsyncCall -> {
+            this.busy = false;
+            future.completer().handle(unitAsyncCall);
+            final Runnable next = waiting.poll();
+            if (next != null) {
+                next.run();
+            }
+        });
+        final TransactionScope child = new TransactionScope(key, delegate);
+        try {
+            connection.execute(SAVEPOINT, savepointAsyncCall -> {
+                if (savepointAsyncCall.failed()) {
+                    unit.fail(savepointAsyncCall.cause());
+                    return;
+                }
+                Future<T> result;
+                try {
+                    result = child.apply(function);
+                } catch (Throwable t) {
+                    result = Future.failedFuture(t);
+                }
+                result.setHandler(functionAsyncCall -> {
+                    child.close();
+                    if (functionAsyncCall.succeeded()) {
+                        connection.execute(RELEASE_SAVEPOINT, releaseAsyncCall -> {
+                            if (releaseAsyncCall.succeeded()) {
+                                afterCommit.addAll(child.afterCommit);
+                                unit.complete(functionAsyncCall.result());
+                            } else {
+                                unit.fail(releaseAsyncCall.cause());
+                            }
+                        });
+                    } else {
+                        connection.execute(ROLLBACK_TO_SAVEPOINT, rollbackAsyncCall -> {
+                            if (rollbackAsyncCall.failed()) {
+                                LOGGER.error("Rollback failed", rollbackAsyncCall.cause());
+                            }
+                            unit.fail(functionAsyncCall.cause());
+                        });
+                    }
+                });
+            });
+        } catch (Throwable t) {
+            unit.tryFail(t);
+        }
+    }
+
+    void afterCommit(final Runnable action) {
+        afterCommit.add(action);
+    }
+
+    /**
+     * Runs the actions registered in the scope, called once the transaction committed.
+     */
+    void committed() {
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (Throwable t) {
+                LOGGER.error("After commit action failed", t);
+            }
+        }
+        afterCommit.clear();
+    }
+
+    /**
+     * Ends the scope, it is no longer current even in callbacks arriving late.
+     */
+    void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Handles the result of a statement run in this scope with the scope current.
+     */
+    <A> void handle(final Handler<A> handler, final A result) {
+        final Context context = Vertx.currentContext();
+        final Object previous = this.enter(context);
+        try {
+            handler.handle(result);
+        } finally {
+            this.exit(context, previous);
+        }
+    }
+
+    private Object enter(final Context context) {
+        if (context == null) {
+            return null;
+        }
+        final Object previous = context.get(key);
+        context.put(key, this);
+        return previous;
+    }
+
+    private void exit(final Context context, final Object previous) {
+        if (context == null) {
+            return;
+        }
+        if (previous == null) {
+            context.remove(key);
+        } else {
+            context.put(key, previous);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pl.zdusza;
+
+/**
+ * Failure of a transaction which did not finish before its deadline. The transaction is rolled back.
+ */
+public final class TransactionTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMillis;
+
+    public TransactionTimeoutException(final long timeoutMillis, final Throwable cause) {
+        super("Transaction did not finish within " + timeoutMillis + " ms", cause);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,79 @@
+package pl.zdusza;
+
+/**
+ * Settings of a {@link WriteBehindOutbox}. Pending writes are flushed flushInterval milliseconds after the first of
+ * them arrived, or as soon as maxBatchSize of them are pending, at most maxBatchSize per transaction.
+ */
+public final class WriteBehindOptions {
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 100;
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private static final int DEFAULT_MAX_PENDING = 10000;
+
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private int maxPending = DEFAULT_MAX_PENDING;
+
+    private boolean flushOnClose = true;
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Longest delay in milliseconds between a write and the start of the flush taking it.
+     */
+    public WriteBehindOptions setFlushInterval(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.flushInterval = value;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Maximum number of writes flushed in one transaction.
+     */
+    public WriteBehindOptions setMaxBatchSize(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive");
+        }
+        this.maxBatchSize = value;
+        return this;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Maximum number of distinct keys waiting for a flush, writes of further keys are rejected.
+     */
+    public WriteBehindOptions setMaxPending(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Max pending must be positive");
+        }
+        this.maxPending = value;
+        return this;
+    }
+
+    public boolean isFlushOnClose() {
+        return flushOnClose;
+    }
+
+    /**
+     * Whether closing the outbox flushes pending writes, otherwise they are dropped and fail.
+     */
+    public WriteBehindOptions setFlushOnClose(final boolean value) {
+        this.flushOnClose = value;
+        return this;
+    }
+}
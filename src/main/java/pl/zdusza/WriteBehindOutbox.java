@@ -0,0 +1,217 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delays idempotent writes, like upserts of counters or last seen timestamps, and executes them in batches through
+ * {@link Dao#batchWithParams(io.vertx.ext.sql.SQLConnection, String, List)}, one transaction per batch. A write
+ * replaces the params of a pending write of the same key, so only the last one is executed. The future of a write
+ * completes after the commit of the batch executing it and fails when that batch fails, failed writes are not
+ * retried. The future of a replaced write completes right away, so a hot key holds a single future. Batches run
+ * one at a time in order of the first write of their keys. Writes of new keys are rejected with
+ * {@link OutboxFullException} once maxPending keys are waiting.
+ */
+public class WriteBehindOutbox {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindOutbox.class);
+
+    private final Vertx vertx;
+
+    private final Dao dao;
+
+    private final String sql;
+
+    private final WriteBehindOptions options;
+
+    private final Map<Object, Pending> pending = new LinkedHashMap<>();
+
+    private final List<Future<Void>> closing = new ArrayList<>();
+
+    private long timerId = -1;
+
+    private boolean flushing;
+
+    private boolean closed;
+
+    public WriteBehindOutbox(final Vertx vertx, final Dao dao, final String sql, final WriteBehindOptions options) {
+        this.vertx = vertx;
+        this.dao = dao;
+        this.sql = sql;
+        this.options = options;
+    }
+
+    /**
+     * Queues the params of the statement for the key, replacing params still pending for it.
+     */
+    public final Future<Void> write(final Object key, final JsonArray params) {
+        final Future<Void> future = Future.future();
+        final Future<Void> replaced;
+        final boolean full;
+        synchronized (this) {
+            if (closed) {
+                return Future.failedFuture(new IllegalStateException("Outbox closed"));
+            }
+            Pending write = pending.get(key);
+            if (write == null) {
+                if (pending.size() >= options.getMaxPending()) {
+                    return Future.failedFuture(new OutboxFullException(options.getMaxPending()));
+                }
+                write = new Pending();
+                pending.put(key, write);
+            }
+            replaced = write.future;
+            write.params = params;
+            write.future = future;
+            full = pending.size() >= options.getMaxBatchSize();
+            if (!full && !flushing && timerId == -1) {
+                timerId = vertx.setTimer(options.getFlushInterval(), this::timer);
+            }
+        }
+        if (replaced != null) {
+            replaced.tryComplete();
+        }
+        if (full) {
+            this.flush();
+        }
+        return future;
+    }
+
+    /**
+     * Stops accepting writes. The returned future completes once pending writes were flushed, or dropped without
+     * flush on close.
+     */
+    public final Future<Void> close() {
+        final Future<Void> future = Future.future();
+        final List<Pending> dropped = new ArrayList<>();
+        final boolean drained;
+        synchronized (this) {
+            this.closed = true;
+            this.cancelTimer();
+            if (!options.isFlushOnClose()) {
+                dropped.addAll(pending.values());
+                pending.clear();
+            }
+            drained = pending.isEmpty() && !flushing;
+            if (!drained) {
+                closing.add(future);
+            }
+        }
+        final IllegalStateException closedException = new IllegalStateException("Outbox closed");
+        for (Pending write : dropped) {
+            write.fail(closedException);
+        }
+        if (drained) {
+            future.complete();
+        } else {
+            this.flush();
+        }
+        return future;
+    }
+
+    /**
+     * Number of keys waiting for a flush.
+     */
+    public final synchronized int getPending() {
+        return pending.size();
+    }
+
+    private void timer(final long firedTimerId) {
+        synchronized (this) {
+            if (timerId != firedTimerId) {
+                return;
+            }
+            timerId = -1;
+        }
+        this.flush();
+    }
+
+    private void flush() {
+        final List<Pending> batch;
+        synchronized (this) {
+            if (flushing || pending.isEmpty()) {
+                return;
+            }
+            this.cancelTimer();
+            this.flushing = true;
+            batch = new ArrayList<>(Math.min(pending.size(), options.getMaxBatchSize()));
+            final Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < options.getMaxBatchSize()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        final List<JsonArray> batchParams = new ArrayList<>(batch.size());
+        for (Pending write : batch) {
+            batchParams.add(write.params);
+        }
+        final Future<List<Integer>> transaction = Future.future();
+        transaction.setHandler(transactionAsyncCall -> {
+            if (transactionAsyncCall.failed()) {
+                LOGGER.error("Flush of {} writes failed", batch.size(), transactionAsyncCall.cause());
+            }
+            for (Pending write : batch) {
+                if (transactionAsyncCall.succeeded()) {
+                    write.complete();
+                } else {
+                    write.fail(transactionAsyncCall.cause());
+                }
+            }
+            this.flushed();
+        });
+        dao.doInTransactionPLTZ(connection -> dao.batchWithParams(connection, sql, batchParams), transaction);
+    }
+
+    private void flushed() {
+        final boolean again;
+        final List<Future<Void>> drained = new ArrayList<>();
+        synchronized (this) {
+            this.flushing = false;
+            again = !pending.isEmpty() && (closed || pending.size() >= options.getMaxBatchSize());
+            if (!again && !pending.isEmpty() && timerId == -1) {
+                timerId = vertx.setTimer(options.getFlushInterval(), this::timer);
+            }
+            if (closed && pending.isEmpty()) {
+                drained.addAll(closing);
+                closing.clear();
+            }
+        }
+        for (Future<Void> future : drained) {
+            future.complete();
+        }
+        if (again) {
+            this.flush();
+        }
+    }
+
+    private void cancelTimer() {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+    }
+
+    private static final class Pending {
+
+        private Future<Void> future;
+
+        private JsonArray params;
+
+        private void complete() {
+            future.tryComplete();
+        }
+
+        private void fail(final Throwable cause) {
+            future.tryFail(cause);
+        }
+    }
+}
@@ -0,0 +1 @@
+SELECT pg_backend_pid();
\ No newline at end of file
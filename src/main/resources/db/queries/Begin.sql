@@ -0,0 +1 @@
+BEGIN;
\ No newline at end of file
@@ -0,0 +1 @@
+BEGIN READ ONLY;
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT pg_cancel_backend(?);
\ No newline at end of file
@@ -0,0 +1 @@
+COMMIT;
\ No newline at end of file
@@ -0,0 +1 @@
+DECLARE dao_stream NO SCROLL CURSOR FOR
\ No newline at end of file
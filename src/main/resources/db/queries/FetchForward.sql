@@ -0,0 +1 @@
+FETCH FORWARD %d FROM dao_stream;
\ No newline at end of file
@@ -0,0 +1 @@
+RELEASE SAVEPOINT dao_savepoint;
\ No newline at end of file
@@ -0,0 +1 @@
+ROLLBACK;
\ No newline at end of file
@@ -0,0 +1 @@
+ROLLBACK TO SAVEPOINT dao_savepoint;
\ No newline at end of file
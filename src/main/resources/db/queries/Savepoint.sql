@@ -0,0 +1 @@
+SAVEPOINT dao_savepoint;
\ No newline at end of file
@@ -0,0 +1 @@
+SET TIME ZONE 'Europe/Warsaw';
\ No newline at end of file
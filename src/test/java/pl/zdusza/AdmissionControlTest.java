@@ -0,0 +1,63 @@
+package pl.zdusza;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControlTest {
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final Runnable NOTHING = () -> { };
+
+    private final AdmissionControl admission = new AdmissionControl(new AdmissionPolicy()
+            .setMaxInFlight(MAX_IN_FLIGHT)
+            .setMaxQueued(0)
+            .setAdaptive(true)
+            .setLatencyTarget(1)
+            .setDecreaseFactor(DECREASE_FACTOR), new DaoMetrics(true));
+
+    @Test
+    public final void shouldRejectAboveLimitWithoutQueue() {
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            Assert.assertEquals(AdmissionControl.Admission.ADMITTED, admission.admit(NOTHING));
+        }
+        Assert.assertEquals(AdmissionControl.Admission.REJECTED, admission.admit(NOTHING));
+    }
+
+    @Test
+    public final void shouldDecreaseLimitMultiplicativelyAndIncreaseAdditively() {
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            admission.admit(NOTHING);
+        }
+        admission.release(SLOW_NANOS, false);
+        Assert.assertEquals(MAX_IN_FLIGHT / 2, admission.getLimit());
+        Assert.assertEquals(AdmissionControl.Admission.REJECTED, admission.admit(NOTHING));
+        admission.release(0, false);
+        admission.release(0, false);
+        Assert.assertEquals(2, admission.getLimit());
+        Assert.assertEquals(AdmissionControl.Admission.ADMITTED, admission.admit(NOTHING));
+        admission.release(0, true);
+        Assert.assertEquals(1, admission.getLimit());
+    }
+
+    @Test
+    public final void shouldDecreaseLimitOnceForBurstOfSlowTransactions() {
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            admission.admit(NOTHING);
+        }
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            admission.release(SLOW_NANOS, i > 0);
+        }
+        Assert.assertEquals(MAX_IN_FLIGHT / 2, admission.getLimit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void shouldRejectMinInFlightAboveMaxInFlight() {
+        new AdmissionControl(new AdmissionPolicy()
+                .setMaxInFlight(MAX_IN_FLIGHT)
+                .setMinInFlight(MAX_IN_FLIGHT + 1)
+                .setAdaptive(true), new DaoMetrics(true));
+    }
+}
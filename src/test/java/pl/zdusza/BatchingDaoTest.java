@@ -0,0 +1,162 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(VertxUnitRunner.class)
+public class BatchingDaoTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String SAVEPOINT = "SAVEPOINT dao_savepoint;";
+    private static final String RELEASE_SAVEPOINT = "RELEASE SAVEPOINT dao_savepoint;";
+    private static final String ROLLBACK_TO_SAVEPOINT = "ROLLBACK TO SAVEPOINT dao_savepoint;";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final long WINDOW_MILLIS = 10;
+    private static final int MAX_BATCH_SIZE = 3;
+    private static final SQLException TEST_SERIALIZATION_FAILURE =
+            new SQLException("could not serialize access due to concurrent update", "40001");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private BatchingDao batchingDao;
+
+    @Before
+    public final void setUp() {
+        this.batchingDao = new BatchingDao(vertxContext.vertx(), new Dao(sqlClient), WINDOW_MILLIS, MAX_BATCH_SIZE);
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldRunFullBatchInSingleTransaction(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        Future<String> third = Future.future();
+        batchingDao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        batchingDao.doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), second);
+        batchingDao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), third);
+        CompositeFuture.join(first, second, third).setHandler(v -> tc.verify(v1 -> {
+            Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(MAX_BATCH_SIZE))
+                    .execute(ArgumentMatchers.eq(SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(2))
+                    .execute(ArgumentMatchers.eq(RELEASE_SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK_TO_SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            tc.assertEquals(first.result(), TEST_SUCCESSFUL_RESULT);
+            tc.assertEquals(second.cause(), TEST_EXCEPTION_1);
+            tc.assertEquals(third.result(), TEST_SUCCESSFUL_RESULT);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldFlushPartialBatchAfterWindow(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        batchingDao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+                    tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+                    async.complete();
+                });
+            } else {
+                tc.fail(v.cause());
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldFailWholeBatchWhenCommitFails(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).commit(Mockito.any());
+        Future<String> result = Future.future();
+        batchingDao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldNotRunFailedFunctionsAgainWhenBatchIsRetried(final TestContext tc) {
+        Async async = tc.async();
+        BatchingDao retrying = new BatchingDao(vertxContext.vertx(), new Dao(vertxContext.vertx(), sqlClient,
+                new DaoOptions().setRetryPolicy(new RetryPolicy().setInitialBackoff(1).setMaxBackoff(1))),
+                WINDOW_MILLIS, 2);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.failedFuture(TEST_SERIALIZATION_FAILURE));
+            return null;
+        }).doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).commit(Mockito.any());
+        AtomicInteger succeeding = new AtomicInteger();
+        AtomicInteger failing = new AtomicInteger();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        retrying.doInTransactionPLTZ(connection -> {
+            succeeding.incrementAndGet();
+            return Future.succeededFuture(TEST_SUCCESSFUL_RESULT);
+        }, first);
+        retrying.doInTransactionPLTZ(connection -> {
+            failing.incrementAndGet();
+            return Future.failedFuture(TEST_EXCEPTION_1);
+        }, second);
+        CompositeFuture.join(first, second).setHandler(v -> tc.verify(v1 -> {
+            Mockito.verify(sqlConnection, Mockito.times(2)).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK_TO_SAVEPOINT), Mockito.any());
+            tc.assertEquals(2, succeeding.get());
+            tc.assertEquals(1, failing.get());
+            tc.assertEquals(first.result(), TEST_SUCCESSFUL_RESULT);
+            tc.assertEquals(second.cause(), TEST_EXCEPTION_1);
+            async.complete();
+        }));
+    }
+}
@@ -7,6 +7,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 public class ClassPathFileResolverTest {
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
@@ -32,4 +38,49 @@ public class ClassPathFileResolverTest {
     public final void testShouldReadJsonArrayFileOnTheClassPath() {
         Assert.assertEquals(new JsonArray(), new ClassPathFileResolver().jsonArrayFile("/test-file-array.json"));
     }
+
+    @Test
+    public final void testShouldReadFileBytesOnTheClassPathAsReadOnlyBuffer() {
+        ByteBuffer bytes = new ClassPathFileResolver().byteBuffer("/test-file.txt");
+        Assert.assertTrue(bytes.isReadOnly());
+        Assert.assertEquals("test\n", StandardCharsets.UTF_8.decode(bytes).toString());
+    }
+
+    @Test
+    public final void testShouldFailToReadBytesOfNotExtistinFileOnTheClassPath() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage("Missing file on project classpath: unexisting file");
+        new ClassPathFileResolver().byteBuffer("unexisting file");
+    }
+
+    @Test
+    public final void testShouldFailToReadJsonOfNotExtistinFileOnTheClassPath() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage("Missing file on project classpath: unexisting file");
+        new ClassPathFileResolver().jsonObjectFile("unexisting file");
+    }
+
+    @Test
+    public final void testShouldStreamJsonArrayFileOnTheClassPath() {
+        List<JsonObject> rows = new ArrayList<>();
+        try (JsonArrayReader reader = new ClassPathFileResolver().jsonArrayReader("/test-file-rows.json")) {
+            reader.forEachRemaining(rows::add);
+        }
+        Assert.assertEquals(new ClassPathFileResolver().jsonArrayFile("/test-file-rows.json"), new JsonArray(rows));
+    }
+
+    @Test
+    public final void testShouldStreamEmptyJsonArrayFileOnTheClassPath() {
+        JsonArrayReader reader = new ClassPathFileResolver().jsonArrayReader("/test-file-array.json");
+        Assert.assertFalse(reader.hasNext());
+        expectedException.expect(NoSuchElementException.class);
+        reader.next();
+    }
+
+    @Test
+    public final void testShouldFailToStreamJsonObjectFileAsArray() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage("Not a JSON array: /test-file-object.json");
+        new ClassPathFileResolver().jsonArrayReader("/test-file-object.json");
+    }
 }
@@ -0,0 +1,90 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoAdmissionTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String TEST_OTHER_RESULT = "OtherSuccess";
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(vertxContext.vertx(), sqlClient, new DaoOptions()
+                .setAdmissionPolicy(new AdmissionPolicy().setMaxInFlight(1).setMaxQueued(1))
+                .setMetricsEnabled(true));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldQueueAboveLimitAndRejectWhenQueueIsFull(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> held = Future.future();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        Future<String> third = Future.future();
+        dao.doInTransactionPLTZ(connection -> held, first);
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_OTHER_RESULT), second);
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_OTHER_RESULT), third);
+        tc.assertTrue(third.failed());
+        tc.assertTrue(third.cause() instanceof DaoOverloadedException);
+        tc.assertFalse(second.isComplete());
+        tc.assertEquals(1, dao.getMetrics().getQueued());
+        tc.assertEquals(1L, dao.getMetrics().getCount(DaoMetrics.Counter.REJECTIONS));
+        Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+        second.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_OTHER_RESULT, v.result());
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, first.result());
+            tc.assertEquals(0, dao.getMetrics().getQueued());
+            Mockito.verify(sqlClient, Mockito.times(2)).getConnection(Mockito.any());
+            async.complete();
+        }));
+        held.complete(TEST_SUCCESSFUL_RESULT);
+    }
+
+    @Test
+    public final void testShouldTimeOutWhileQueuedWithoutCheckout(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> held = Future.future();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        dao.doInTransactionPLTZ(connection -> held, first);
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_OTHER_RESULT), TIMEOUT_MILLIS, second);
+        second.setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.cause() instanceof TransactionTimeoutException);
+            tc.assertEquals(0, dao.getMetrics().getQueued());
+            Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+            held.complete(TEST_SUCCESSFUL_RESULT);
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, first.result());
+            async.complete();
+        }));
+    }
+}
@@ -0,0 +1,143 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.UpdateResult;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoBatchWithParamsTest {
+    private static final String INSERT = "INSERT INTO items (id, name) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String REWRITTEN_INSERT =
+            "INSERT INTO items (id, name) VALUES (?, ?), (?, ?) ON CONFLICT DO NOTHING";
+    private static final String UPDATE = "UPDATE items SET name = ? WHERE id = ?";
+    private static final List<JsonArray> PARAMS = Arrays.asList(new JsonArray().add(1).add("a"),
+            new JsonArray().add(2).add("b"));
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final int DRIVER_COUNT = 3;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient);
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<UpdateResult>>>getArgument(2)
+                    .handle(Future.succeededFuture(
+                            new UpdateResult(invocation.<JsonArray>getArgument(1).size() / 2, new JsonArray())));
+            return null;
+        }).when(sqlConnection).updateWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private void withoutDriverBatch() {
+        Mockito.doThrow(new UnsupportedOperationException("Batch mode not supported"))
+                .when(sqlConnection).batchWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public final void testShouldUseDriverBatchInTransaction(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<List<Integer>>>>getArgument(2)
+                    .handle(Future.succeededFuture(Arrays.asList(1, DRIVER_COUNT)));
+            return null;
+        }).when(sqlConnection).batchWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+        Future<List<Integer>> result = Future.future();
+        dao.doInTransactionPLTZ(connection -> dao.batchWithParams(connection, UPDATE, PARAMS), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(Arrays.asList(1, DRIVER_COUNT), v.result());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .batchWithParams(ArgumentMatchers.eq(UPDATE), ArgumentMatchers.eq(PARAMS), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).updateWithParams(Mockito.any(), Mockito.any(),
+                    Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldRewriteInsertIntoMultiRowValues(final TestContext tc) {
+        Async async = tc.async();
+        withoutDriverBatch();
+        dao.batchWithParams(sqlConnection, INSERT, PARAMS).setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(Arrays.asList(1, 1), v.result());
+            Mockito.verify(sqlConnection, Mockito.times(1)).updateWithParams(
+                    ArgumentMatchers.eq(REWRITTEN_INSERT),
+                    ArgumentMatchers.eq(new JsonArray().add(1).add("a").add(2).add("b")),
+                    Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldSplitRewrittenInsertAtParamsLimit(final TestContext tc) {
+        Async async = tc.async();
+        withoutDriverBatch();
+        List<JsonArray> params = new ArrayList<>();
+        for (int i = 0; i <= ParamsBatch.MAX_PARAMS_PER_STATEMENT; i++) {
+            params.add(new JsonArray().add(i));
+        }
+        dao.batchWithParams(sqlConnection, "INSERT INTO ids VALUES (?)", params).setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(params.size(), v.result().size());
+            tc.assertEquals(Statement.SUCCESS_NO_INFO, v.result().get(0));
+            Mockito.verify(sqlConnection, Mockito.times(2)).updateWithParams(Mockito.any(), Mockito.any(),
+                    Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldRunOtherStatementsOneByOneAndStopAtFailure(final TestContext tc) {
+        Async async = tc.async();
+        withoutDriverBatch();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<UpdateResult>>>getArgument(2)
+                    .handle(Future.succeededFuture(new UpdateResult(1, new JsonArray())));
+            return null;
+        }).doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<UpdateResult>>>getArgument(2)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).updateWithParams(ArgumentMatchers.eq(UPDATE), Mockito.any(), Mockito.any());
+        dao.batchWithParams(sqlConnection, UPDATE, PARAMS).setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_EXCEPTION_1, v.cause());
+            Mockito.verify(sqlConnection, Mockito.times(2))
+                    .updateWithParams(ArgumentMatchers.eq(UPDATE), Mockito.any(), Mockito.any());
+            async.complete();
+        }));
+    }
+}
@@ -0,0 +1,108 @@
+package pl.zdusza;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoConnectionAffinityTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final long IDLE_TIMEOUT_MILLIS = 10;
+    private static final long DELAY_MILLIS = 50;
+    private static final long LONG_IDLE_TIMEOUT_MILLIS = 60000;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient, new DaoOptions()
+                .setConnectionAffinitySize(1)
+                .setConnectionAffinityIdleTimeout(IDLE_TIMEOUT_MILLIS));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldReuseConnectionOnSameContextAndCloseItWhenIdle(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        first.setHandler(v -> dao.doInTransactionPLTZ(connection -> Future.succeededFuture(v.result()), second));
+        second.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(2)).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).close(Mockito.any());
+            vertxContext.vertx().setTimer(DELAY_MILLIS, id -> tc.verify(v2 -> {
+                Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public final void testShouldNotKeepConnectionOfFailedTransaction(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        dao.doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), first);
+        first.setHandler(v -> dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT),
+                second));
+        second.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_EXCEPTION_1, first.cause());
+            Mockito.verify(sqlClient, Mockito.times(2)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldCloseKeptConnectionWhenVerticleIsUndeployed(final TestContext tc) {
+        Async async = tc.async();
+        Dao longIdle = new Dao(sqlClient, new DaoOptions()
+                .setConnectionAffinitySize(1)
+                .setConnectionAffinityIdleTimeout(LONG_IDLE_TIMEOUT_MILLIS));
+        vertxContext.vertx().deployVerticle(new AbstractVerticle() {
+            @Override
+            public void start(final Future<Void> startFuture) {
+                Future<String> result = Future.future();
+                longIdle.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+                result.<Void>map(v -> null).setHandler(startFuture.completer());
+            }
+        }, deployAsyncCall -> tc.verify(v -> {
+            tc.assertTrue(deployAsyncCall.succeeded());
+            Mockito.verify(sqlConnection, Mockito.never()).close(Mockito.any());
+            vertxContext.vertx().undeploy(deployAsyncCall.result(), undeployAsyncCall -> tc.verify(v1 -> {
+                tc.assertTrue(undeployAsyncCall.succeeded());
+                Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                async.complete();
+            }));
+        }));
+    }
+}
@@ -0,0 +1,120 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoConnectionInitializationTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String SET_SESSION_TIMEZONE = "SET TIME ZONE 'Europe/Warsaw';";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient,
+                new DaoOptions().setConnectionInitialization(DaoOptions.ConnectionInitialization.SESSION));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldSetSessionTimezoneOncePerConnection(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> first = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        first.compose(v -> {
+            Future<String> second = Future.future();
+            this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+            return second;
+        }).setHandler(v -> {
+            if (v.succeeded()) {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlClient, Mockito.times(2)).getConnection(Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .update(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(2))
+                            .setAutoCommit(ArgumentMatchers.eq(false), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(2)).commit(Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(2)).close(Mockito.any());
+                    tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+                    async.complete();
+                });
+            } else {
+                tc.fail(v.cause());
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldCloseConnectionWhenSetSessionTimezoneFails(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).update(Mockito.any(), Mockito.any());
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.never())
+                            .setAutoCommit(ArgumentMatchers.eq(false), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldCloseConnectionWhenSetSessionTimezoneThrows(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doThrow(TEST_EXCEPTION_1).when(sqlConnection).update(Mockito.any(), Mockito.any());
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+}
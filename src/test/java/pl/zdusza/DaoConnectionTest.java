@@ -0,0 +1,198 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.UpdateResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public class DaoConnectionTest {
+    private static final String QUERY = "SELECT * FROM foo;";
+    private static final String OTHER_QUERY = "SELECT * FROM bar";
+    private static final String UPDATE = "DELETE FROM foo";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final String PREPARE = "PREPARE ";
+    private static final String AS = " AS ";
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    private StatementCacheStats stats;
+
+    private DaoConnection connection;
+
+    @Before
+    public final void setUp() {
+        this.stats = new StatementCacheStats();
+        this.connection = new DaoConnection(sqlConnection, new ConnectionSessions.ConnectionSession(), stats, 1);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).execute(Mockito.any(), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            return null;
+        }).when(sqlConnection).query(Mockito.any(), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<UpdateResult>>>getArgument(1)
+                    .handle(Future.succeededFuture(new UpdateResult()));
+            return null;
+        }).when(sqlConnection).update(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public final void shouldDetectCacheableStatements() {
+        Assert.assertEquals("SELECT 1", DaoConnection.cacheable(" SELECT 1; "));
+        Assert.assertEquals("with x as (select 1) select * from x",
+                DaoConnection.cacheable("with x as (select 1) select * from x"));
+        Assert.assertNull(DaoConnection.cacheable("SET TIME ZONE 'Europe/Warsaw';"));
+        Assert.assertNull(DaoConnection.cacheable("SELECT 1; SELECT 2"));
+        Assert.assertNull(DaoConnection.cacheable(""));
+    }
+
+    private List<String> executed() {
+        ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(sqlConnection, Mockito.atLeastOnce()).execute(statements.capture(), Mockito.any());
+        return statements.getAllValues();
+    }
+
+    private static String preparedName(final String prepare) {
+        String statement = prepare.substring(prepare.lastIndexOf(PREPARE) + PREPARE.length());
+        return statement.substring(0, statement.indexOf(AS));
+    }
+
+    @Test
+    public final void shouldPrepareStatementOnceAndExecuteItAfterwards() {
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        List<String> executed = executed();
+        Assert.assertEquals(1, executed.size());
+        String name = preparedName(executed.get(0));
+        Assert.assertEquals(PREPARE + name + AS + "SELECT * FROM foo", executed.get(0));
+        Mockito.verify(sqlConnection, Mockito.times(2))
+                .query(ArgumentMatchers.eq("EXECUTE " + name), Mockito.any());
+        Assert.assertEquals(1, stats.getMisses());
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(0, stats.getEvictions());
+    }
+
+    @Test
+    public final void shouldDeallocateEvictedStatement() {
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        connection.query(OTHER_QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        List<String> executed = executed();
+        Assert.assertEquals(PREPARE + preparedName(executed.get(1)) + AS + OTHER_QUERY + "; DEALLOCATE "
+                + preparedName(executed.get(0)), executed.get(1));
+        Assert.assertEquals(1, stats.getEvictions());
+    }
+
+    @Test
+    public final void shouldKeepEvictionCandidateCachedWhenPrepareFails() {
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).execute(Mockito.any(), Mockito.any());
+        connection.query(OTHER_QUERY, ac -> Assert.assertEquals(TEST_EXCEPTION_1, ac.cause()));
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        Assert.assertEquals(2, executed().size());
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(0, stats.getEvictions());
+        Mockito.verify(sqlConnection, Mockito.times(2))
+                .query(ArgumentMatchers.eq("EXECUTE " + preparedName(executed().get(0))), Mockito.any());
+    }
+
+    @Test
+    public final void shouldBypassCacheWhenPhysicalConnectionIsUnknown() {
+        new DaoConnection(sqlConnection, new ConnectionSessions.ConnectionSession(0, false), stats, 1)
+                .query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        Mockito.verify(sqlConnection, Mockito.times(1)).query(ArgumentMatchers.eq(QUERY), Mockito.any());
+        Mockito.verify(sqlConnection, Mockito.never()).execute(Mockito.any(), Mockito.any());
+        Assert.assertEquals(0, stats.getMisses());
+    }
+
+    @Test
+    public final void shouldNotIdentifySessionOfConnectionWithoutUnwrap() {
+        Mockito.when(sqlConnection.unwrap()).thenThrow(new UnsupportedOperationException());
+        Assert.assertFalse(new ConnectionSessions().of(sqlConnection).isIdentified());
+    }
+
+    @Test
+    public final void shouldRunUpdatesThroughPreparedStatements() {
+        connection.update(UPDATE, ac -> Assert.assertTrue(ac.succeeded()));
+        Mockito.verify(sqlConnection, Mockito.times(1))
+                .update(ArgumentMatchers.eq("EXECUTE " + preparedName(executed().get(0))), Mockito.any());
+    }
+
+    @Test
+    public final void shouldPassNotCacheableStatementsThrough() {
+        connection.update("SET TIME ZONE 'UTC'", ac -> Assert.assertTrue(ac.succeeded()));
+        Mockito.verify(sqlConnection, Mockito.times(1))
+                .update(ArgumentMatchers.eq("SET TIME ZONE 'UTC'"), Mockito.any());
+        Mockito.verify(sqlConnection, Mockito.never()).execute(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public final void shouldFailQueryWhenPrepareFails() {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).execute(Mockito.any(), Mockito.any());
+        connection.query(QUERY, ac -> Assert.assertEquals(TEST_EXCEPTION_1, ac.cause()));
+        Mockito.verify(sqlConnection, Mockito.never()).query(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public final void shouldNotReuseStatementNamesInFreshSessionOfSameBackend() {
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        new DaoConnection(sqlConnection, new ConnectionSessions.ConnectionSession(), stats, 1)
+                .query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        List<String> executed = executed();
+        Assert.assertNotEquals(preparedName(executed.get(0)), preparedName(executed.get(1)));
+    }
+
+    @Test
+    public final void shouldPrepareAgainOnlyWhenStatementNameIsInvalid() {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.failedFuture(new SQLException("prepared statement does not exist", "26000")));
+            return null;
+        }).doAnswer(invocation -> {
+            String name = invocation.<String>getArgument(0).substring("EXECUTE ".length());
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.failedFuture(new SQLException("column of \"" + name + "\" failed", "42703")));
+            return null;
+        }).doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            return null;
+        }).when(sqlConnection).query(Mockito.any(), Mockito.any());
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.failed()));
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.failed()));
+        connection.query(QUERY, ac -> Assert.assertTrue(ac.succeeded()));
+        Assert.assertEquals(2, executed().size());
+        Assert.assertEquals(2, stats.getMisses());
+        Assert.assertEquals(1, stats.getHits());
+    }
+}
@@ -0,0 +1,197 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoCopyTest {
+    private static final String COPY = "COPY items (id, name) FROM STDIN (FORMAT csv)";
+    private static final long ROWS = 2;
+    private static final SQLException TEST_EXCEPTION_1 = new SQLException("Test exception 1");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    @Mock
+    private Connection jdbcConnection;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    @Mock
+    private CopyIn copyIn;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() throws SQLException {
+        this.dao = new Dao(vertxContext.vertx(), sqlClient, new DaoOptions());
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doReturn(jdbcConnection).when(sqlConnection).unwrap();
+        Mockito.when(jdbcConnection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        Mockito.when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        Mockito.when(copyManager.copyIn(COPY)).thenReturn(copyIn);
+        Mockito.when(copyIn.endCopy()).thenReturn(ROWS);
+        Mockito.when(copyIn.isActive()).thenReturn(true);
+    }
+
+    @Test
+    public final void testShouldCopyCsvRowsAndCommit(final TestContext tc) {
+        Async async = tc.async();
+        Future<CopyResult> result = Future.future();
+        Iterator<JsonArray> rows = Arrays.asList(new JsonArray().add(1).add("a"),
+                new JsonArray().addNull().add("b\"c")).iterator();
+        dao.copyInTransactionPLTZ(COPY, CopyCsv.of(rows), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.succeeded());
+            tc.assertEquals(ROWS, v.result().getRows());
+            tc.assertTrue(v.result().getRowsPerSecond() > 0);
+            ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+            ArgumentCaptor<Integer> offset = ArgumentCaptor.forClass(Integer.class);
+            ArgumentCaptor<Integer> length = ArgumentCaptor.forClass(Integer.class);
+            Mockito.verify(copyIn, Mockito.times(1)).writeToCopy(bytes.capture(), offset.capture(), length.capture());
+            tc.assertEquals("1,\"a\"\n,\"b\"\"c\"\n",
+                    new String(bytes.getValue(), offset.getValue(), length.getValue(), StandardCharsets.UTF_8));
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldCancelCopyAndRollbackWhenWriteFails(final TestContext tc) throws SQLException {
+        Async async = tc.async();
+        Mockito.doThrow(TEST_EXCEPTION_1).when(copyIn).writeToCopy(Mockito.any(), Mockito.anyInt(), Mockito.anyInt());
+        Future<CopyResult> result = Future.future();
+        dao.copyInTransactionPLTZ(COPY, new BufferStream(Buffer.buffer("1\n")), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_EXCEPTION_1, v.cause());
+            Mockito.verify(copyIn, Mockito.times(1)).cancelCopy();
+            Mockito.verify(copyIn, Mockito.never()).endCopy();
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldPauseStreamWhileWritingEveryBuffer(final TestContext tc) {
+        Async async = tc.async();
+        BufferStream stream = new BufferStream(Buffer.buffer("1\n"), Buffer.buffer("2\n"));
+        Future<CopyResult> result = Future.future();
+        dao.copyInTransactionPLTZ(COPY, stream, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(ROWS, v.result().getRows());
+            tc.assertEquals(2, stream.pauses);
+            Mockito.verify(copyIn, Mockito.times(2)).writeToCopy(Mockito.any(), Mockito.anyInt(), Mockito.anyInt());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldFailCopyOnOtherConnections(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doReturn(null).when(sqlConnection).unwrap();
+        Future<CopyResult> result = Future.future();
+        dao.copyInTransactionPLTZ(COPY, CopyCsv.of(Arrays.asList(new JsonArray().add(1)).iterator()), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.cause() instanceof IllegalStateException);
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    private static final class BufferStream implements ReadStream<Buffer> {
+        private final Iterator<Buffer> buffers;
+        private Handler<Buffer> handler;
+        private Handler<Void> endHandler;
+        private boolean paused;
+        private int pauses;
+
+        private BufferStream(final Buffer... buffers) {
+            this.buffers = Arrays.asList(buffers).iterator();
+        }
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(final Handler<Throwable> value) {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(final Handler<Buffer> value) {
+            this.handler = value;
+            flow();
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            this.paused = true;
+            this.pauses++;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            this.paused = false;
+            flow();
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(final Handler<Void> value) {
+            this.endHandler = value;
+            return this;
+        }
+
+        private void flow() {
+            while (!paused && handler != null && buffers.hasNext()) {
+                handler.handle(buffers.next());
+            }
+            if (!paused && !buffers.hasNext() && endHandler != null) {
+                Handler<Void> end = endHandler;
+                this.endHandler = null;
+                end.handle(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoDeadlineTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String BACKEND_PID = "SELECT pg_backend_pid();";
+    private static final String CANCEL_BACKEND = "SELECT pg_cancel_backend(?);";
+    private static final String UPDATE = "UPDATE items SET done = true";
+    private static final int TEST_BACKEND_PID = 4242;
+    private static final long TIMEOUT_MILLIS = 10;
+    private static final long DELAY_MILLIS = 50;
+    private static final RuntimeException TEST_CANCELLED =
+            new RuntimeException("canceling statement due to user request");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLConnection cancellingConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    @Mock
+    private SQLClient cancelClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(vertxContext.vertx(), sqlClient, Collections.emptyList(), cancelClient, new DaoOptions()
+                .setTransactionTimeout(TIMEOUT_MILLIS)
+                .setMetricsEnabled(true));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        DaoMocks.stubGetConnection(cancelClient, cancellingConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.succeededFuture(new ResultSet().setResults(
+                            Collections.singletonList(new JsonArray().add(TEST_BACKEND_PID)))));
+            return null;
+        }).when(sqlConnection).query(ArgumentMatchers.eq(BACKEND_PID), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(cancellingConnection).close(Mockito.any());
+    }
+
+    @Test
+    public final void testShouldCancelRollbackAndFailWhenFunctionExceedsDeadline(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> functionResult = Future.future();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(2)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            functionResult.fail(TEST_CANCELLED);
+            return null;
+        }).when(cancellingConnection).queryWithParams(ArgumentMatchers.eq(CANCEL_BACKEND),
+                ArgumentMatchers.eq(new JsonArray().add(TEST_BACKEND_PID)), Mockito.any());
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> functionResult, result);
+        result.setHandler(v -> {
+            tc.assertTrue(v.cause() instanceof TransactionTimeoutException);
+            vertxContext.vertx().runOnContext(v1 -> tc.verify(v2 -> {
+                Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+                Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+                Mockito.verify(cancellingConnection, Mockito.never()).close(Mockito.any());
+                tc.assertEquals(1L, dao.getMetrics().getCount(DaoMetrics.Counter.TIMEOUTS));
+                tc.assertEquals(0, dao.getMetrics().getInFlight());
+                async.complete();
+            }));
+        });
+    }
+
+    @Test
+    public final void testShouldSucceedWhenCommitPendingAtDeadlineGoesThrough(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            Handler<AsyncResult<Void>> handler = invocation.getArgument(0);
+            vertxContext.vertx().setTimer(DELAY_MILLIS, id -> handler.handle(Future.succeededFuture()));
+            return null;
+        }).when(sqlConnection).commit(Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(2)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            return null;
+        }).when(cancellingConnection).queryWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+            Mockito.verify(sqlConnection, Mockito.never()).rollback(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+            tc.assertEquals(0L, dao.getMetrics().getCount(DaoMetrics.Counter.TIMEOUTS));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldFailRightAwayAndReleaseConnectionWhenCheckoutExceedsDeadline(final TestContext tc) {
+        Async async = tc.async();
+        AtomicReference<Handler<AsyncResult<SQLConnection>>> checkout = new AtomicReference<>();
+        Mockito.doAnswer(invocation -> {
+            checkout.set(invocation.getArgument(0));
+            return null;
+        }).when(sqlClient).getConnection(Mockito.any());
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            tc.assertTrue(v.cause() instanceof TransactionTimeoutException);
+            checkout.get().handle(Future.succeededFuture(sqlConnection));
+            tc.verify(v1 -> {
+                Mockito.verify(sqlConnection, Mockito.never()).setAutoCommit(Mockito.anyBoolean(), Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                tc.assertEquals(0, dao.getMetrics().getInFlight());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public final void testShouldNotArmDeadlineWhenDisabledPerCall(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), 0, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+            Mockito.verify(sqlConnection, Mockito.never()).query(Mockito.any(), Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldCancelFirstAndRollbackOnlyOnceHangingFunctionSettles(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(2)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            return null;
+        }).when(cancellingConnection).queryWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+        Future<String> hanging = Future.future();
+        AtomicReference<SQLConnection> functionConnection = new AtomicReference<>();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> {
+            functionConnection.set(connection);
+            return hanging;
+        }, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.cause() instanceof TransactionTimeoutException);
+            Mockito.verify(cancellingConnection, Mockito.times(1)).queryWithParams(
+                    ArgumentMatchers.eq(CANCEL_BACKEND), ArgumentMatchers.eq(new JsonArray().add(TEST_BACKEND_PID)),
+                    Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).rollback(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).close(Mockito.any());
+            tc.assertEquals(1, dao.getMetrics().getInFlight());
+            functionConnection.get().update(UPDATE, updateAsyncCall -> tc.verify(v2 -> {
+                tc.assertTrue(updateAsyncCall.cause() instanceof TransactionTimeoutException);
+                Mockito.verify(sqlConnection, Mockito.never())
+                        .update(ArgumentMatchers.eq(UPDATE), Mockito.any());
+                hanging.complete(TEST_SUCCESSFUL_RESULT);
+                Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                tc.assertEquals(0, dao.getMetrics().getInFlight());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public final void testShouldRollbackWhenTimeoutHandlerCompletesFunction(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(2)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            return null;
+        }).when(cancellingConnection).queryWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+        Future<String> functionResult = Future.future();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> functionResult, result);
+        result.setHandler(v -> {
+            tc.assertTrue(v.cause() instanceof TransactionTimeoutException);
+            functionResult.fail(TEST_CANCELLED);
+            vertxContext.vertx().runOnContext(v1 -> tc.verify(v2 -> {
+                Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                tc.assertEquals(0, dao.getMetrics().getInFlight());
+                async.complete();
+            }));
+        });
+    }
+}
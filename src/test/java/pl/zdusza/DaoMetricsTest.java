@@ -0,0 +1,116 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoMetricsTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final RuntimeException TEST_EXCEPTION_2 = new RuntimeException("Test exception 2");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient, new DaoOptions().setMetricsEnabled(true));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_2));
+            return null;
+        }).when(sqlConnection).rollback(Mockito.any());
+    }
+
+    @Test
+    public final void testShouldRecordEveryPhaseOfCommittedTransaction(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> {
+            tc.assertEquals(1, dao.getMetrics().getInFlight());
+            return Future.succeededFuture(TEST_SUCCESSFUL_RESULT);
+        }, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            DaoMetrics metrics = dao.getMetrics();
+            tc.assertTrue(metrics.isEnabled());
+            for (DaoMetrics.Phase phase : DaoMetrics.Phase.values()) {
+                tc.assertEquals(phase == DaoMetrics.Phase.ROLLBACK ? 0L : 1L, metrics.getHistogram(phase).getCount());
+            }
+            tc.assertEquals(1L, metrics.getCount(DaoMetrics.Counter.COMMITS));
+            tc.assertEquals(0, metrics.getInFlight());
+            tc.assertEquals(1L, metrics.toJson().getJsonObject("counters").getLong("commits"));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldCountRollbackFailures(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            DaoMetrics metrics = dao.getMetrics();
+            tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+            tc.assertEquals(1L, metrics.getHistogram(DaoMetrics.Phase.ROLLBACK).getCount());
+            tc.assertEquals(0L, metrics.getCount(DaoMetrics.Counter.ROLLBACKS));
+            tc.assertEquals(1L, metrics.getCount(DaoMetrics.Counter.ROLLBACK_FAILURES));
+            tc.assertEquals(0, metrics.getInFlight());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldNotCountEndOfReadOnlyTransactionAsRollback(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        this.dao.doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            DaoMetrics metrics = dao.getMetrics();
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            tc.assertEquals(0L, metrics.getCount(DaoMetrics.Counter.ROLLBACKS));
+            tc.assertEquals(0L, metrics.getCount(DaoMetrics.Counter.ROLLBACK_FAILURES));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldNotRecordAnythingWhenDisabled(final TestContext tc) {
+        Async async = tc.async();
+        Dao disabled = new Dao(sqlClient);
+        Future<String> result = Future.future();
+        disabled.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertFalse(disabled.getMetrics().isEnabled());
+            tc.assertEquals(0L, disabled.getMetrics().getHistogram(DaoMetrics.Phase.CHECKOUT).getCount());
+            tc.assertEquals(0L, disabled.getMetrics().getCount(DaoMetrics.Counter.COMMITS));
+            async.complete();
+        }));
+    }
+}
@@ -0,0 +1,68 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+/**
+ * Stubbing shared by the tests of transactions: a client handing out the connection and a connection whose calls
+ * made by a transaction succeed. Tests stub again only the calls they change.
+ */
+final class DaoMocks {
+
+    private DaoMocks() {
+    }
+
+    static void stubSuccessfulTransactions(final SQLClient sqlClient, final SQLConnection sqlConnection) {
+        stubGetConnection(sqlClient, sqlConnection);
+        stubSuccessfulCalls(sqlConnection);
+    }
+
+    static void stubGetConnection(final SQLClient sqlClient, final SQLConnection sqlConnection) {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<SQLConnection>>>getArgument(0)
+                    .handle(Future.succeededFuture(sqlConnection));
+            return null;
+        }).when(sqlClient).getConnection(Mockito.any());
+    }
+
+    /**
+     * Stubs setAutoCommit(false), update, execute, commit, rollback and close to succeed.
+     */
+    static void stubSuccessfulCalls(final SQLConnection sqlConnection) {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).setAutoCommit(ArgumentMatchers.eq(false), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).update(Mockito.any(), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).execute(Mockito.any(), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).commit(Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).rollback(Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(0)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).close(Mockito.any());
+    }
+}
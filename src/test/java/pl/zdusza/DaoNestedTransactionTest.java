@@ -0,0 +1,162 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoNestedTransactionTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String TEST_OTHER_RESULT = "OtherSuccess";
+    private static final String SAVEPOINT = "SAVEPOINT dao_savepoint;";
+    private static final String RELEASE_SAVEPOINT = "RELEASE SAVEPOINT dao_savepoint;";
+    private static final String ROLLBACK_TO_SAVEPOINT = "ROLLBACK TO SAVEPOINT dao_savepoint;";
+    private static final String QUERY = "SELECT 1";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient, new DaoOptions().setNestedTransactions(true));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.succeededFuture(new ResultSet()));
+            return null;
+        }).when(sqlConnection).query(ArgumentMatchers.eq(QUERY), Mockito.any());
+    }
+
+    private Future<String> inner(final Function<SQLConnection, Future<String>> function) {
+        Future<String> result = Future.future();
+        dao.doInTransactionPLTZ(function, result);
+        return result;
+    }
+
+    @Test
+    public final void testShouldRunInnerTransactionUnderSavepointOfOuterOne(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        dao.doInTransactionPLTZ(connection -> inner(c -> Future.succeededFuture(TEST_OTHER_RESULT))
+                .map(v -> TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).execute(ArgumentMatchers.eq(SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(RELEASE_SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldRollBackToSavepointWhenInnerTransactionFails(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        dao.doInTransactionPLTZ(connection -> inner(c -> Future.failedFuture(TEST_EXCEPTION_1))
+                .otherwise(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK_TO_SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never())
+                    .execute(ArgumentMatchers.eq(RELEASE_SAVEPOINT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldNestTransactionsStartedInStatementCallbacks(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        dao.doInTransactionPLTZ(connection -> {
+            Future<String> outer = Future.future();
+            connection.query(QUERY, queryAsyncCall ->
+                    inner(c -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT)).setHandler(outer.completer()));
+            return outer;
+        }, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).execute(ArgumentMatchers.eq(SAVEPOINT), Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldNotNestTransactionStartedAfterOuterOneFinished(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        dao.doInTransactionPLTZ(connection -> {
+            Future<String> outer = Future.future();
+            connection.query(QUERY, queryAsyncCall -> outer.complete(TEST_SUCCESSFUL_RESULT));
+            return outer;
+        }, result);
+        result.setHandler(v -> inner(c -> Future.succeededFuture(TEST_OTHER_RESULT)).setHandler(v1 -> tc.verify(v2 -> {
+            tc.assertEquals(TEST_OTHER_RESULT, v1.result());
+            Mockito.verify(sqlClient, Mockito.times(2)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).execute(ArgumentMatchers.eq(SAVEPOINT), Mockito.any());
+            async.complete();
+        })));
+    }
+
+    @Test
+    public final void testShouldRunAfterCommitActionsOfSucceededUnitsOnce(final TestContext tc) {
+        Async async = tc.async();
+        List<String> actions = new ArrayList<>();
+        tc.assertFalse(dao.afterCommit(() -> actions.add(TEST_EXCEPTION_1.getMessage())));
+        Future<String> result = Future.future();
+        dao.doInTransactionPLTZ(connection -> {
+            tc.assertTrue(dao.afterCommit(() -> actions.add(TEST_SUCCESSFUL_RESULT)));
+            return inner(c -> {
+                dao.afterCommit(() -> actions.add(TEST_OTHER_RESULT));
+                return Future.succeededFuture(TEST_OTHER_RESULT);
+            }).compose(v -> inner(c -> {
+                dao.afterCommit(() -> actions.add(TEST_EXCEPTION_1.getMessage()));
+                return Future.failedFuture(TEST_EXCEPTION_1);
+            })).otherwise(TEST_SUCCESSFUL_RESULT).map(v -> {
+                tc.assertTrue(actions.isEmpty());
+                return v;
+            });
+        }, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(Arrays.asList(TEST_SUCCESSFUL_RESULT, TEST_OTHER_RESULT), actions);
+            async.complete();
+        }));
+    }
+}
@@ -0,0 +1,218 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoPipelinedTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String BEGIN = "BEGIN; SET LOCAL TIME ZONE 'Europe/Warsaw';";
+    private static final String BEGIN_IN_SESSION = "BEGIN;";
+    private static final String SET_SESSION_TIMEZONE = "SET TIME ZONE 'Europe/Warsaw';";
+    private static final String COMMIT = "COMMIT;";
+    private static final String ROLLBACK = "ROLLBACK;";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    @Before
+    public final void setUp() {
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldDoInPipelinedTransactionSucceed(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        new Dao(sqlClient, new DaoOptions().setPipelined(true))
+                .doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.never())
+                            .setAutoCommit(ArgumentMatchers.anyBoolean(), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(BEGIN), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(COMMIT), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+                    async.complete();
+                });
+            } else {
+                tc.fail(v.cause());
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldSetSessionTimezoneBeforeBeginInPipelinedTransaction(final TestContext tc) {
+        Async async = tc.async();
+        Dao dao = new Dao(sqlClient, new DaoOptions()
+                .setPipelined(true)
+                .setConnectionInitialization(DaoOptions.ConnectionInitialization.SESSION));
+        Future<String> first = Future.future();
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        first.compose(v -> {
+            Future<String> second = Future.future();
+            dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+            return second;
+        }).setHandler(v -> {
+            if (v.succeeded()) {
+                tc.verify(v1 -> {
+                    InOrder inOrder = Mockito.inOrder(sqlConnection);
+                    inOrder.verify(sqlConnection, Mockito.times(1))
+                            .update(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+                    inOrder.verify(sqlConnection, Mockito.times(2))
+                            .execute(ArgumentMatchers.eq(BEGIN_IN_SESSION), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(2))
+                            .execute(ArgumentMatchers.eq(COMMIT), Mockito.any());
+                    async.complete();
+                });
+            } else {
+                tc.fail(v.cause());
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldRollbackPipelinedTransactionWhenFunctionFails(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        new Dao(sqlClient, new DaoOptions().setPipelined(true))
+                .doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.never())
+                            .execute(ArgumentMatchers.eq(COMMIT), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.never()).rollback(Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldRollbackPipelinedTransactionWhenBeginFails(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).execute(ArgumentMatchers.eq(BEGIN), Mockito.any());
+        Future<String> result = Future.future();
+        new Dao(sqlClient, new DaoOptions().setPipelined(true))
+                .doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldKeepSessionTimezoneWhenFirstPipelinedTransactionRollsBack(final TestContext tc) {
+        Async async = tc.async();
+        Dao dao = new Dao(sqlClient, new DaoOptions()
+                .setPipelined(true)
+                .setConnectionInitialization(DaoOptions.ConnectionInitialization.SESSION));
+        Future<String> first = Future.future();
+        dao.doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), first);
+        first.otherwise(TEST_SUCCESSFUL_RESULT).compose(v -> {
+            Future<String> second = Future.future();
+            dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+            return second;
+        }).setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            InOrder inOrder = Mockito.inOrder(sqlConnection);
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .update(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(BEGIN_IN_SESSION), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(BEGIN_IN_SESSION), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(COMMIT), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never())
+                    .execute(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldSetSessionTimezoneAgainAfterItFailed(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.succeededFuture());
+            return null;
+        }).when(sqlConnection).update(Mockito.any(), Mockito.any());
+        Dao dao = new Dao(sqlClient, new DaoOptions()
+                .setPipelined(true)
+                .setConnectionInitialization(DaoOptions.ConnectionInitialization.SESSION));
+        Future<String> first = Future.future();
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        first.setHandler(v -> {
+            tc.assertEquals(TEST_EXCEPTION_1, v.cause());
+            Future<String> second = Future.future();
+            dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+            second.setHandler(v1 -> tc.verify(v2 -> {
+                tc.assertEquals(TEST_SUCCESSFUL_RESULT, v1.result());
+                Mockito.verify(sqlConnection, Mockito.times(2))
+                        .update(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+                Mockito.verify(sqlConnection, Mockito.times(1))
+                        .execute(ArgumentMatchers.eq(BEGIN_IN_SESSION), Mockito.any());
+                async.complete();
+            }));
+        });
+    }
+}
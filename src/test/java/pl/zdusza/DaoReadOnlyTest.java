@@ -0,0 +1,257 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Collections;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoReadOnlyTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String BEGIN_READ_ONLY = "BEGIN READ ONLY; SET LOCAL TIME ZONE 'Europe/Warsaw';";
+    private static final String ROLLBACK = "ROLLBACK;";
+    private static final String BEGIN_READ_ONLY_IN_SESSION = "BEGIN READ ONLY;";
+    private static final String SET_SESSION_TIMEZONE = "SET TIME ZONE 'Europe/Warsaw';";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final RuntimeException TEST_EXCEPTION_2 = new RuntimeException("Test exception 2");
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    @Mock
+    private SQLClient replicaClient;
+
+    @Before
+    public final void setUp() {
+        DaoMocks.stubGetConnection(replicaClient, sqlConnection);
+        DaoMocks.stubSuccessfulCalls(sqlConnection);
+    }
+
+    private Dao dao() {
+        return new Dao(sqlClient, Collections.singletonList(replicaClient), new DaoOptions());
+    }
+
+    @Test
+    public final void testShouldDoInReadOnlyTransactionOnReplica(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        dao().doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlClient, Mockito.never()).getConnection(Mockito.any());
+                    Mockito.verify(replicaClient, Mockito.times(1)).getConnection(Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(BEGIN_READ_ONLY), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+                    async.complete();
+                });
+            } else {
+                tc.fail(v.cause());
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldSucceedReadOnlyTransactionWhenEndingItFails(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_2));
+            return null;
+        }).when(sqlConnection).execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+        Mockito.doThrow(TEST_EXCEPTION_2).when(sqlConnection).close(Mockito.any());
+        Future<String> result = Future.future();
+        dao().doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.verify(v1 -> {
+                    tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+                    async.complete();
+                });
+            } else {
+                tc.fail(v.cause());
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldFailReadOnlyTransactionWhenFunctionThrows(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> result = Future.future();
+        dao().doInReadOnlyTransactionPLTZ(connection -> {
+            throw TEST_EXCEPTION_1;
+        }, result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldFailReadOnlyTransactionWhenBeginFails(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<Void>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).execute(ArgumentMatchers.eq(BEGIN_READ_ONLY), Mockito.any());
+        Future<String> result = Future.future();
+        dao().doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    Mockito.verify(sqlConnection, Mockito.times(1))
+                            .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldFailReadOnlyTransactionWhenGetConnectionThrows(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doThrow(TEST_EXCEPTION_1).when(replicaClient).getConnection(Mockito.any());
+        Future<String> result = Future.future();
+        dao().doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> {
+            if (v.succeeded()) {
+                tc.fail();
+            } else {
+                tc.verify(v1 -> {
+                    tc.assertEquals(v.cause(), TEST_EXCEPTION_1);
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public final void testShouldSetSessionTimezoneOutsideReadOnlyTransaction(final TestContext tc) {
+        Async async = tc.async();
+        Dao dao = new Dao(sqlClient, Collections.singletonList(replicaClient), new DaoOptions()
+                .setConnectionInitialization(DaoOptions.ConnectionInitialization.SESSION));
+        Future<String> first = Future.future();
+        dao.doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        first.compose(v -> {
+            Future<String> second = Future.future();
+            dao.doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+            return second;
+        }).setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            InOrder inOrder = Mockito.inOrder(sqlConnection);
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(BEGIN_READ_ONLY_IN_SESSION), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+            inOrder.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(BEGIN_READ_ONLY_IN_SESSION), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(SET_SESSION_TIMEZONE), Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldDoInReadOnlyTransactionOnPrimaryWithoutReplicas(final TestContext tc) {
+        Async async = tc.async();
+        DaoMocks.stubGetConnection(sqlClient, sqlConnection);
+        Future<String> result = Future.future();
+        new Dao(sqlClient, new DaoOptions())
+                .doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            Mockito.verify(replicaClient, Mockito.never()).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(BEGIN_READ_ONLY), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).setAutoCommit(Mockito.anyBoolean(), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldRejectReadOnlyTransactionOnPrimaryAboveAdmissionLimit(final TestContext tc) {
+        DaoMocks.stubGetConnection(sqlClient, sqlConnection);
+        Dao dao = new Dao(sqlClient, new DaoOptions()
+                .setAdmissionPolicy(new AdmissionPolicy().setMaxInFlight(1).setMaxQueued(0)));
+        Future<String> held = Future.future();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        dao.doInReadOnlyTransactionPLTZ(connection -> held, first);
+        dao.doInReadOnlyTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+        tc.assertTrue(second.cause() instanceof DaoOverloadedException);
+        held.complete(TEST_SUCCESSFUL_RESULT);
+        tc.assertEquals(TEST_SUCCESSFUL_RESULT, first.result());
+        Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+    }
+
+    @Test
+    public final void testShouldTimeOutReadOnlyTransactionOnPrimary(final TestContext tc) {
+        Async async = tc.async();
+        DaoMocks.stubGetConnection(sqlClient, sqlConnection);
+        Future<String> held = Future.future();
+        Future<String> result = Future.future();
+        new Dao(vertxContext.vertx(), sqlClient, new DaoOptions().setTransactionTimeout(TIMEOUT_MILLIS))
+                .doInReadOnlyTransactionPLTZ(connection -> held, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.cause() instanceof TransactionTimeoutException);
+            Mockito.verify(sqlConnection, Mockito.never()).close(Mockito.any());
+            held.complete(TEST_SUCCESSFUL_RESULT);
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .execute(ArgumentMatchers.eq(ROLLBACK), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+            async.complete();
+        }));
+    }
+}
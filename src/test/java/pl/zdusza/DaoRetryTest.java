@@ -0,0 +1,121 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoRetryTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final SQLException TEST_SERIALIZATION_FAILURE =
+            new SQLException("could not serialize access due to concurrent update", "40001");
+    private static final SQLException TEST_UNIQUE_VIOLATION =
+            new SQLException("duplicate key value violates unique constraint", "23505");
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_MILLIS = 5;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(vertxContext.vertx(), sqlClient, new DaoOptions()
+                .setMetricsEnabled(true)
+                .setRetryPolicy(new RetryPolicy()
+                        .setMaxAttempts(MAX_ATTEMPTS)
+                        .setInitialBackoff(BACKOFF_MILLIS)
+                        .setMaxBackoff(BACKOFF_MILLIS)));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldRetrySerializationFailureOnFreshConnection(final TestContext tc) {
+        Async async = tc.async();
+        AtomicInteger calls = new AtomicInteger();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> calls.incrementAndGet() == 1
+                ? Future.failedFuture(TEST_SERIALIZATION_FAILURE)
+                : Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+            tc.assertEquals(2, calls.get());
+            Mockito.verify(sqlClient, Mockito.times(2)).getConnection(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            tc.assertEquals(1L, dao.getMetrics().getRetries(RetryPolicy.SERIALIZATION_FAILURE));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldFailWithLastCauseWhenAttemptsAreExhausted(final TestContext tc) {
+        Async async = tc.async();
+        AtomicInteger calls = new AtomicInteger();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> {
+            calls.incrementAndGet();
+            return Future.failedFuture(TEST_SERIALIZATION_FAILURE);
+        }, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(v.cause(), TEST_SERIALIZATION_FAILURE);
+            tc.assertEquals(MAX_ATTEMPTS, calls.get());
+            tc.assertEquals((long) MAX_ATTEMPTS - 1, dao.getMetrics().getRetries(RetryPolicy.SERIALIZATION_FAILURE));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldNotRetryOtherFailures(final TestContext tc) {
+        Async async = tc.async();
+        AtomicInteger calls = new AtomicInteger();
+        Future<String> result = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> {
+            calls.incrementAndGet();
+            return Future.failedFuture(TEST_UNIQUE_VIOLATION);
+        }, result);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(v.cause(), TEST_UNIQUE_VIOLATION);
+            tc.assertEquals(1, calls.get());
+            tc.assertEquals(0L, dao.getMetrics().getRetries("23505"));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldFailRetriedTransactionWithoutVertx(final TestContext tc) throws InterruptedException {
+        Dao withoutVertx = new Dao(sqlClient, new DaoOptions().setRetryPolicy(new RetryPolicy()));
+        Future<String> result = Future.future();
+        Thread caller = new Thread(() -> withoutVertx.doInTransactionPLTZ(
+                connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), result));
+        caller.start();
+        caller.join();
+        tc.assertTrue(result.cause() instanceof IllegalStateException);
+        Mockito.verify(sqlClient, Mockito.never()).getConnection(Mockito.any());
+    }
+}
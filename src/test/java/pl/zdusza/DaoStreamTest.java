@@ -0,0 +1,148 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoStreamTest {
+    private static final String QUERY = "SELECT id FROM items";
+    private static final String DECLARE = "DECLARE dao_stream NO SCROLL CURSOR FOR " + QUERY;
+    private static final String FETCH = "FETCH FORWARD 2 FROM dao_stream;";
+    private static final int FETCH_SIZE = 2;
+    private static final int ROWS = 3;
+    private static final long TIMEOUT_MILLIS = 50;
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient, new DaoOptions().setStreamFetchSize(FETCH_SIZE));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.succeededFuture(rows(0, 1)));
+            return null;
+        }).doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.succeededFuture(rows(2)));
+            return null;
+        }).when(sqlConnection).query(ArgumentMatchers.eq(FETCH), Mockito.any());
+    }
+
+    private static ResultSet rows(final Integer... ids) {
+        List<JsonArray> results = new ArrayList<>();
+        Arrays.stream(ids).forEach(id -> results.add(new JsonArray().add(id)));
+        return new ResultSet(Collections.singletonList("id"), results, null);
+    }
+
+    @Test
+    public final void testShouldStreamRowsInChunksAndCommitAtEnd(final TestContext tc) {
+        Async async = tc.async();
+        List<Integer> received = new ArrayList<>();
+        ReadStream<JsonArray> stream = dao.streamInTransactionPLTZ(QUERY, new JsonArray());
+        stream.exceptionHandler(tc::fail);
+        stream.endHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(Arrays.asList(0, 1, 2), received);
+            Mockito.verify(sqlConnection, Mockito.times(1)).execute(ArgumentMatchers.eq(DECLARE), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(2)).query(ArgumentMatchers.eq(FETCH), Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+            async.complete();
+        }));
+        stream.handler(row -> received.add(row.getInteger(0)));
+    }
+
+    @Test
+    public final void testShouldNotFetchWhilePaused(final TestContext tc) {
+        Async async = tc.async();
+        List<Integer> received = new ArrayList<>();
+        ReadStream<JsonArray> stream = dao.streamInTransactionPLTZ(QUERY, new JsonArray().add(1), FETCH_SIZE);
+        stream.endHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(ROWS, received.size());
+            Mockito.verify(sqlConnection, Mockito.times(1))
+                    .updateWithParams(ArgumentMatchers.eq(DECLARE), ArgumentMatchers.eq(new JsonArray().add(1)),
+                            Mockito.any());
+            async.complete();
+        }));
+        stream.handler(row -> {
+            received.add(row.getInteger(0));
+            stream.pause();
+            tc.verify(v -> Mockito.verify(sqlConnection, Mockito.times(received.size() > FETCH_SIZE ? 2 : 1))
+                    .query(ArgumentMatchers.eq(FETCH), Mockito.any()));
+            vertxContext.vertx().runOnContext(v -> stream.resume());
+        });
+    }
+
+    @Test
+    public final void testShouldRollbackAndReportFailedFetch(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(1)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).query(ArgumentMatchers.eq(FETCH), Mockito.any());
+        ReadStream<JsonArray> stream = dao.streamInTransactionPLTZ(QUERY, null);
+        stream.endHandler(v -> tc.fail());
+        stream.exceptionHandler(t -> tc.verify(v -> {
+            tc.assertEquals(TEST_EXCEPTION_1, t);
+            Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            async.complete();
+        }));
+        stream.handler(row -> tc.fail());
+    }
+
+    @Test
+    public final void testShouldRollbackAndCloseWhenPausedStreamTimesOut(final TestContext tc) {
+        Async async = tc.async();
+        Dao timed = new Dao(vertxContext.vertx(), sqlClient,
+                new DaoOptions().setStreamFetchSize(FETCH_SIZE).setTransactionTimeout(TIMEOUT_MILLIS));
+        ReadStream<JsonArray> stream = timed.streamInTransactionPLTZ(QUERY, null);
+        stream.endHandler(v -> tc.fail());
+        stream.exceptionHandler(t -> vertxContext.vertx().runOnContext(v -> tc.verify(v1 -> {
+            tc.assertTrue(t instanceof TransactionTimeoutException);
+            Mockito.verify(sqlConnection, Mockito.never()).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).close(Mockito.any());
+            async.complete();
+        })));
+        stream.handler(row -> stream.pause());
+    }
+}
@@ -0,0 +1,86 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(VertxUnitRunner.class)
+public class DaoTransactionPoolTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final String TEST_OTHER_RESULT = "OtherSuccess";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final int POOL_SIZE = 2;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient, new DaoOptions().setTransactionPoolSize(POOL_SIZE).setMetricsEnabled(true));
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+    }
+
+    @Test
+    public final void testShouldNotLeakStateOfFailedTransactionIntoNextOne(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> failed = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), failed);
+        Future<String> succeeded = Future.future();
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), succeeded);
+        succeeded.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(failed.cause(), TEST_EXCEPTION_1);
+            tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT);
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(2)).close(Mockito.any());
+            tc.assertEquals(0, dao.getMetrics().getInFlight());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldStartTransactionFromCompletionOfPreviousOne(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        first.setHandler(v -> this.dao.doInTransactionPLTZ(connection ->
+                Future.succeededFuture(v.result() + TEST_OTHER_RESULT), second));
+        this.dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        second.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(first.result(), TEST_SUCCESSFUL_RESULT);
+            tc.assertEquals(v.result(), TEST_SUCCESSFUL_RESULT + TEST_OTHER_RESULT);
+            Mockito.verify(sqlConnection, Mockito.times(2)).commit(Mockito.any());
+            Mockito.verify(sqlConnection, Mockito.times(2)).close(Mockito.any());
+            tc.assertEquals(2L, dao.getMetrics().getCount(DaoMetrics.Counter.COMMITS));
+            async.complete();
+        }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testShouldRejectNegativePoolSize() {
+        new DaoOptions().setTransactionPoolSize(-1);
+    }
+}
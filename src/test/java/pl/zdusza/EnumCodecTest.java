@@ -0,0 +1,99 @@
+package pl.zdusza;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+public class EnumCodecTest {
+    private static final int CODE_MULTIPLIER = 10;
+    private static final int UNKNOWN_CODE = 7;
+    private static final int OUT_OF_RANGE_CODE_COLUMN = 3;
+    private static final double FRACTIONAL_CODE = 1.7;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public final void shouldDecodeText() {
+        EnumCodec<Period> codec = EnumCodec.of(Period.class);
+        Assert.assertEquals(Period.LAST_12_W, codec.decode(new StringBuilder("last-12-w")));
+        Assert.assertEquals(Period.LAST_2_D, codec.decode("last2D"));
+        Assert.assertNull(codec.decode("last-3-d"));
+        Assert.assertNull(codec.decode((CharSequence) null));
+    }
+
+    @Test
+    public final void shouldDecodeAsciiBytes() {
+        EnumCodec<Period> codec = EnumCodec.of(Period.class);
+        byte[] bytes = "|LAST_2_Y|".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals(Period.LAST_2_Y, codec.decode(bytes, 1, bytes.length - 2));
+        Assert.assertNull(codec.decode(bytes, 0, bytes.length));
+        byte[] utf8 = "last-2-ÿ".getBytes(StandardCharsets.UTF_8);
+        Assert.assertNull(codec.decode(utf8, 0, utf8.length));
+    }
+
+    @Test
+    public final void shouldDecodeOrdinals() {
+        EnumCodec<Period> codec = EnumCodec.of(Period.class);
+        Assert.assertSame(codec, EnumCodec.of(Period.class));
+        Assert.assertEquals(Period.LAST_2_M, codec.decode(Period.LAST_2_M.ordinal()));
+        Assert.assertEquals(Period.LAST_2_M.ordinal(), codec.code(Period.LAST_2_M));
+        Assert.assertNull(codec.decode(-1));
+        Assert.assertNull(codec.decode(Period.values().length));
+    }
+
+    @Test
+    public final void shouldDecodeCustomCodes() {
+        EnumCodec<Period> codec = EnumCodec.of(Period.class, p -> (p.ordinal() + 1) * CODE_MULTIPLIER);
+        Assert.assertEquals(Period.LAST_2_H, codec.decode(CODE_MULTIPLIER));
+        Assert.assertEquals(CODE_MULTIPLIER * 2, codec.code(Period.LAST_2_D));
+        Assert.assertNull(codec.decode(UNKNOWN_CODE));
+    }
+
+    @Test
+    public final void shouldDecodeRowColumns() {
+        EnumCodec<Period> codec = EnumCodec.of(Period.class);
+        JsonArray row = new JsonArray().add("last-2-h").add(Period.LAST_12_Y.ordinal()).addNull().add(Long.MAX_VALUE);
+        Assert.assertEquals(Period.LAST_2_H, codec.decode(row, 0));
+        Assert.assertEquals(Period.LAST_12_Y, codec.decode(row, 1));
+        Assert.assertNull(codec.decode(row, 2));
+        Assert.assertNull(codec.decode(row, OUT_OF_RANGE_CODE_COLUMN));
+    }
+
+    @Test
+    public final void shouldDecodeIntegralNumbers() {
+        EnumCodec<Period> codec = EnumCodec.of(Period.class);
+        int ordinal = Period.LAST_12_Y.ordinal();
+        Assert.assertEquals(Period.LAST_12_Y, codec.decode((Object) (double) ordinal));
+        Assert.assertEquals(Period.LAST_12_Y, codec.decode((Object) new BigDecimal(ordinal).setScale(2)));
+        Assert.assertEquals(Period.LAST_12_Y, codec.decode((Object) BigInteger.valueOf(ordinal)));
+        Assert.assertNull(codec.decode((Object) BigInteger.ONE.shiftLeft(Long.SIZE)));
+        Assert.assertNull(codec.decode((Object) Double.MAX_VALUE));
+    }
+
+    @Test
+    public final void shouldRejectFractionalNumbers() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Enum code must be integral: 1.7");
+        EnumCodec.of(Period.class).decode((Object) FRACTIONAL_CODE);
+    }
+
+    @Test
+    public final void shouldRejectFractionalBigDecimals() {
+        expectedException.expect(IllegalArgumentException.class);
+        EnumCodec.of(Period.class).decode((Object) new BigDecimal("1.50"));
+    }
+
+    @Test
+    public final void shouldRejectDuplicatedCodes() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Duplicated enum code: 0");
+        EnumCodec.of(Period.class, p -> 0);
+    }
+}
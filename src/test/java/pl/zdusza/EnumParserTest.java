@@ -4,11 +4,35 @@ import org.junit.Assert;
 import org.junit.Test;
 
 public class EnumParserTest {
+    private enum Ambiguous {
+        LAST2_D, LAST_2_D, FOO_BAR, FOOBAR
+    }
+
     @Test
     public final void shouldParseEnum() {
         Assert.assertEquals(Period.LAST_2_D, EnumParser.parse("last-2-d", Period.class).get());
     }
 
+    @Test
+    public final void shouldParseEnumIgnoringCaseAndSeparators() {
+        Assert.assertEquals(Period.LAST_12_W, EnumParser.parse("LAST_12_W", Period.class).get());
+        Assert.assertEquals(Period.LAST_12_W, EnumParser.parse("Last_12-w", Period.class).get());
+    }
+
+    @Test
+    public final void shouldParseCamelCaseEnum() {
+        Assert.assertEquals(Period.LAST_2_D, EnumParser.parse("last2D", Period.class).get());
+        Assert.assertEquals(Period.LAST_12_Y, EnumParser.parse(EnumParser.capitalized(Period.LAST_12_Y), Period.class)
+                .get());
+    }
+
+    @Test
+    public final void shouldNotParseUnknownEnum() {
+        Assert.assertFalse(EnumParser.parse("last-3-d", Period.class).isPresent());
+        Assert.assertFalse(EnumParser.parse("last-2-d-", Period.class).isPresent());
+        Assert.assertFalse(EnumParser.parse("", Period.class).isPresent());
+    }
+
     @Test
     public final void shouldFormatEnum() {
         Assert.assertEquals("[last-2-h, last-2-d, last-2-m, last-12-w, last-2-y, last-12-y]",
@@ -20,4 +44,36 @@ public class EnumParserTest {
         Assert.assertEquals("last2D",
                 EnumParser.capitalized(Period.LAST_2_D));
     }
+
+    @Test
+    public final void shouldReturnSameFormatForEveryCopyOfConstants() {
+        String format = EnumParser.format(Period.values());
+        Assert.assertSame(format, EnumParser.format(Period.values()));
+    }
+
+    @Test
+    public final void shouldFormatAndRememberSubsetOfConstants() {
+        Period[] periods = {Period.LAST_12_Y, Period.LAST_2_H};
+        String format = EnumParser.format(periods);
+        Assert.assertEquals("[last-12-y, last-2-h]", format);
+        Assert.assertSame(format, EnumParser.format(periods));
+        periods[1] = Period.LAST_2_D;
+        Assert.assertEquals("[last-12-y, last-2-d]", EnumParser.format(periods));
+        Assert.assertEquals("[]", EnumParser.format(new Period[0]));
+    }
+
+    @Test
+    public final void shouldReturnSameCapitalizedName() {
+        Assert.assertSame(EnumParser.capitalized(Period.LAST_12_W), EnumParser.capitalized(Period.LAST_12_W));
+        Assert.assertEquals("last12W", EnumParser.capitalized(Period.LAST_12_W));
+    }
+
+    @Test
+    public final void shouldParseExactNamesButNotSharedCamelCaseName() {
+        Assert.assertEquals(Ambiguous.LAST2_D, EnumParser.parse("LAST2_D", Ambiguous.class).get());
+        Assert.assertEquals(Ambiguous.LAST_2_D, EnumParser.parse("last-2-d", Ambiguous.class).get());
+        Assert.assertFalse(EnumParser.parse("last2D", Ambiguous.class).isPresent());
+        Assert.assertEquals(Ambiguous.FOO_BAR, EnumParser.parse("FOO_BAR", Ambiguous.class).get());
+        Assert.assertEquals(Ambiguous.FOOBAR, EnumParser.parse("fooBar", Ambiguous.class).get());
+    }
 }
@@ -0,0 +1,50 @@
+package pl.zdusza;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    private static final long SMALL_VALUE = 17;
+    private static final long LARGE_VALUE = 1_000_000;
+    private static final int SAMPLES = 100;
+    private static final double MEDIAN = 50.0;
+    private static final double MAX_RELATIVE_ERROR = 0.04;
+
+    @Test
+    public final void shouldRecordSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(SMALL_VALUE);
+        Assert.assertEquals(1, histogram.getCount());
+        Assert.assertEquals(SMALL_VALUE, histogram.getValueAtPercentile(MEDIAN));
+        Assert.assertEquals(SMALL_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public final void shouldReportPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= SAMPLES; i++) {
+            histogram.record(i * LARGE_VALUE);
+        }
+        long median = histogram.getValueAtPercentile(MEDIAN);
+        Assert.assertTrue(Math.abs(median - SAMPLES / 2 * LARGE_VALUE) <= MAX_RELATIVE_ERROR * median);
+        Assert.assertEquals(SAMPLES * LARGE_VALUE, histogram.getMax());
+        Assert.assertEquals(SAMPLES * LARGE_VALUE, histogram.getValueAtPercentile(MEDIAN * 2));
+    }
+
+    @Test
+    public final void shouldMapEveryIndexBackToValueRange() {
+        for (long value = 0; value < LARGE_VALUE; value += SMALL_VALUE) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+            Assert.assertTrue(index == 0 || LatencyHistogram.highestEquivalentValue(index - 1) < value);
+        }
+    }
+
+    @Test
+    public final void shouldReportZeroWhenEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(MEDIAN));
+        Assert.assertEquals(0, histogram.getMean(), 0);
+        Assert.assertEquals(0L, (long) histogram.toJson().getLong("count"));
+    }
+}
@@ -0,0 +1,205 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class QueryCacheTest {
+    private static final String QUERY = "SELECT name FROM items WHERE id = ?";
+    private static final String TAG = "items";
+    private static final JsonArray PARAMS_A = new JsonArray().add(1);
+    private static final JsonArray PARAMS_B = new JsonArray().add(2);
+    private static final JsonArray PARAMS_C = new JsonArray().add(3);
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final int POPULAR_LOOKUPS = 3;
+    private static final long SMALL_CACHE_LOADS = 3;
+    private static final long SMALL_CACHE_HITS = 4;
+    private static final long EXPIRE_AFTER_WRITE = 1;
+    private static final long EXPIRED_DELAY = 20;
+    private static final long REPLICA_LAG = 10;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    @Mock
+    private SQLClient replicaClient;
+
+    private final List<Handler<AsyncResult<ResultSet>>> runningQueries = new ArrayList<>();
+
+    private QueryCache cache;
+
+    @Before
+    public final void setUp() {
+        this.cache = new QueryCache(new Dao(sqlClient), new QueryCacheOptions());
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<ResultSet>>>getArgument(2)
+                    .handle(Future.succeededFuture(resultSet(invocation.getArgument(1))));
+            return null;
+        }).when(sqlConnection).queryWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private static ResultSet resultSet(final JsonArray params) {
+        return new ResultSet(Collections.singletonList("name"),
+                Collections.singletonList(new JsonArray().add("item " + params.getValue(0))), null);
+    }
+
+    private void deferQueries() {
+        Mockito.doAnswer(invocation -> {
+            runningQueries.add(invocation.getArgument(2));
+            return null;
+        }).when(sqlConnection).queryWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private void completeQueries() {
+        for (Handler<AsyncResult<ResultSet>> handler : runningQueries) {
+            handler.handle(Future.succeededFuture(resultSet(PARAMS_A)));
+        }
+        runningQueries.clear();
+    }
+
+    @Test
+    public final void testShouldShareOneLoadBetweenConcurrentMisses(final TestContext tc) {
+        deferQueries();
+        Future<ResultSet> first = cache.queryWithParams(QUERY, PARAMS_A, TAG);
+        Future<ResultSet> second = cache.queryWithParams(QUERY, PARAMS_A.copy(), TAG);
+        tc.assertFalse(first.isComplete());
+        completeQueries();
+        tc.assertTrue(first.succeeded());
+        tc.assertEquals(first.result(), second.result());
+        Future<ResultSet> cached = cache.queryWithParams(QUERY, PARAMS_A, TAG);
+        tc.assertTrue(cached.succeeded());
+        tc.assertEquals(first.result(), cached.result());
+        Mockito.verify(sqlConnection, Mockito.times(1)).queryWithParams(ArgumentMatchers.eq(QUERY),
+                ArgumentMatchers.eq(PARAMS_A), Mockito.any());
+        tc.assertEquals(1L, cache.getStats().getLoads());
+        tc.assertEquals(2L, cache.getStats().getMisses());
+        tc.assertEquals(1L, cache.getStats().getHits());
+    }
+
+    @Test
+    public final void testShouldInvalidateTagsAfterCommit(final TestContext tc) {
+        Async async = tc.async();
+        tc.assertTrue(cache.queryWithParams(QUERY, PARAMS_A, TAG).succeeded());
+        tc.assertEquals(1, cache.size());
+        Future<String> result = Future.future();
+        cache.doInTransactionPLTZ(connection -> {
+            tc.assertEquals(1, cache.size());
+            return Future.succeededFuture(TEST_SUCCESSFUL_RESULT);
+        }, result, TAG);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            tc.assertEquals(0, cache.size());
+            tc.assertEquals(1L, cache.getStats().getInvalidations());
+            tc.assertTrue(cache.queryWithParams(QUERY, PARAMS_A, TAG).succeeded());
+            tc.assertEquals(2L, cache.getStats().getLoads());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldKeepResultsOnRollback(final TestContext tc) {
+        Async async = tc.async();
+        tc.assertTrue(cache.queryWithParams(QUERY, PARAMS_A, TAG).succeeded());
+        Future<String> result = Future.future();
+        cache.doInTransactionPLTZ(connection -> Future.failedFuture(TEST_EXCEPTION_1), result, TAG);
+        result.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_EXCEPTION_1, v.cause());
+            tc.assertEquals(1, cache.size());
+            tc.assertEquals(0L, cache.getStats().getInvalidations());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldNotCacheResultLoadedBeforeInvalidation(final TestContext tc) {
+        deferQueries();
+        Future<ResultSet> loaded = cache.queryWithParams(QUERY, PARAMS_A, TAG);
+        cache.invalidate(TAG);
+        completeQueries();
+        tc.assertTrue(loaded.succeeded());
+        tc.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public final void testShouldExpireResults(final TestContext tc) {
+        Async async = tc.async();
+        QueryCache expiring = new QueryCache(new Dao(sqlClient),
+                new QueryCacheOptions().setExpireAfterWrite(EXPIRE_AFTER_WRITE));
+        tc.assertTrue(expiring.queryWithParams(QUERY, PARAMS_A).succeeded());
+        vertxContext.vertx().setTimer(EXPIRED_DELAY, id -> tc.verify(v -> {
+            tc.assertTrue(expiring.queryWithParams(QUERY, PARAMS_A).succeeded());
+            tc.assertEquals(2L, expiring.getStats().getLoads());
+            tc.assertEquals(0L, expiring.getStats().getHits());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldKeepFrequentlyUsedResultOverNewOne(final TestContext tc) {
+        QueryCache small = new QueryCache(new Dao(sqlClient), new QueryCacheOptions().setMaximumSize(2));
+        for (int i = 0; i < POPULAR_LOOKUPS; i++) {
+            small.queryWithParams(QUERY, PARAMS_A);
+        }
+        small.queryWithParams(QUERY, PARAMS_B);
+        small.queryWithParams(QUERY, PARAMS_C);
+        tc.assertEquals(2, small.size());
+        tc.assertEquals(1L, small.getStats().getEvictions());
+        small.queryWithParams(QUERY, PARAMS_A);
+        small.queryWithParams(QUERY, PARAMS_C);
+        tc.assertEquals(SMALL_CACHE_LOADS, small.getStats().getLoads());
+        tc.assertEquals(SMALL_CACHE_HITS, small.getStats().getHits());
+    }
+
+    @Test
+    public final void testShouldLoadFromPrimaryWithinReplicaLagOfInvalidation(final TestContext tc) {
+        Async async = tc.async();
+        DaoMocks.stubGetConnection(replicaClient, sqlConnection);
+        QueryCache replicated = new QueryCache(new Dao(sqlClient, Collections.singletonList(replicaClient),
+                new DaoOptions()), new QueryCacheOptions().setReplicaLag(REPLICA_LAG));
+        tc.assertTrue(replicated.queryWithParams(QUERY, PARAMS_A, TAG).succeeded());
+        replicated.invalidate(TAG);
+        tc.assertTrue(replicated.queryWithParams(QUERY, PARAMS_A, TAG).succeeded());
+        Mockito.verify(replicaClient, Mockito.times(1)).getConnection(Mockito.any());
+        Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+        Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+        vertxContext.vertx().setTimer(EXPIRED_DELAY, id -> tc.verify(v -> {
+            tc.assertTrue(replicated.queryWithParams(QUERY, PARAMS_B, TAG).succeeded());
+            Mockito.verify(replicaClient, Mockito.times(2)).getConnection(Mockito.any());
+            Mockito.verify(sqlClient, Mockito.times(1)).getConnection(Mockito.any());
+            async.complete();
+        }));
+    }
+}
@@ -0,0 +1,48 @@
+package pl.zdusza;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class QueryRegistryTest {
+    private static final String FIRST = "/db/test-queries/First.sql";
+    private static final String SECOND = "/db/test-queries/nested/Second.sql";
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public final void testShouldScanDirectoryRecursively() {
+        QueryRegistry registry = QueryRegistry.scan("/db/test-queries/");
+        Assert.assertEquals(2, registry.size());
+        Assert.assertEquals(new ClassPathFileResolver().textFile(FIRST), registry.get(FIRST));
+        Assert.assertEquals("SELECT 2;", registry.get(SECOND));
+    }
+
+    @Test
+    public final void testShouldInternLoadedText() {
+        Assert.assertSame("SELECT 2;".intern(), QueryRegistry.of(SECOND).get(SECOND));
+    }
+
+    @Test
+    public final void testShouldFailToGetNotLoadedFile() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage("Missing file on project classpath: /db/test-queries/Third.sql");
+        QueryRegistry.scan("/db/test-queries").get("/db/test-queries/Third.sql");
+    }
+
+    @Test
+    public final void testShouldFailToLoadNotExistingFile() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage("Missing file on project classpath: /db/test-queries/Third.sql");
+        QueryRegistry.of(FIRST, "/db/test-queries/Third.sql");
+    }
+
+    @Test
+    public final void testShouldFailToScanNotExistingDirectory() {
+        expectedException.expect(RuntimeException.class);
+        expectedException.expectMessage("Missing directory on project classpath: /db/missing-queries");
+        QueryRegistry.scan("/db/missing-queries");
+    }
+}
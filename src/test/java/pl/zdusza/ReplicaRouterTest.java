@@ -0,0 +1,36 @@
+package pl.zdusza;
+
+import io.vertx.ext.sql.SQLClient;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+
+public class ReplicaRouterTest {
+
+    private final SQLClient first = Mockito.mock(SQLClient.class);
+
+    private final SQLClient second = Mockito.mock(SQLClient.class);
+
+    @Test
+    public final void shouldRouteRoundRobin() {
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(first, second), DaoOptions.ReplicaSelection.ROUND_ROBIN);
+        Assert.assertSame(first, router.client(router.acquire()));
+        Assert.assertSame(second, router.client(router.acquire()));
+        Assert.assertSame(first, router.client(router.acquire()));
+    }
+
+    @Test
+    public final void shouldRouteToLeastOutstanding() {
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(first, second),
+                DaoOptions.ReplicaSelection.LEAST_OUTSTANDING);
+        int busy = router.acquire();
+        int idle = router.acquire();
+        Assert.assertNotEquals(busy, idle);
+        router.release(idle);
+        Assert.assertEquals(idle, router.acquire());
+        Assert.assertEquals(1, router.outstanding(busy));
+        Assert.assertEquals(1, router.outstanding(idle));
+    }
+}
@@ -0,0 +1,63 @@
+package pl.zdusza;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+
+public class RetryPolicyTest {
+    private static final String ASYNC_DRIVER_MESSAGE =
+            "ErrorMessage(fields=Map(Severity -> ERROR, SQLSTATE -> 40P01, Message -> deadlock detected))";
+    private static final long INITIAL_BACKOFF = 4;
+    private static final long MAX_BACKOFF = 20;
+    private static final int RETRIES = 100;
+    private static final int SAMPLES = 1000;
+
+    @Test
+    public final void shouldReadSqlStateOfJdbcException() {
+        Assert.assertEquals(RetryPolicy.SERIALIZATION_FAILURE,
+                RetryPolicy.sqlState(new SQLException("could not serialize access", "40001")));
+    }
+
+    @Test
+    public final void shouldReadSqlStateFromMessageOfWrappedException() {
+        Assert.assertEquals(RetryPolicy.DEADLOCK_DETECTED,
+                RetryPolicy.sqlState(new RuntimeException(new IllegalStateException(ASYNC_DRIVER_MESSAGE))));
+    }
+
+    @Test
+    public final void shouldRetryOnlyConfiguredSqlStates() {
+        RetryPolicy policy = new RetryPolicy();
+        Assert.assertEquals(RetryPolicy.DEADLOCK_DETECTED,
+                policy.retryableSqlState(new IllegalStateException(ASYNC_DRIVER_MESSAGE)));
+        Assert.assertNull(policy.retryableSqlState(new SQLException("unique violation", "23505")));
+        Assert.assertNull(policy.retryableSqlState(new RuntimeException("no state")));
+        policy.setRetryableSqlStates(Collections.singleton("23505"));
+        Assert.assertEquals("23505", policy.retryableSqlState(new SQLException("unique violation", "23505")));
+    }
+
+    @Test
+    public final void shouldNotRetryTimedOutTransactions() {
+        Assert.assertNull(new RetryPolicy().retryableSqlState(
+                new TransactionTimeoutException(1, new SQLException("could not serialize access", "40001"))));
+    }
+
+    @Test
+    public final void shouldKeepBackoffWithinCappedExponentialBound() {
+        RetryPolicy policy = new RetryPolicy().setInitialBackoff(INITIAL_BACKOFF).setMaxBackoff(MAX_BACKOFF);
+        for (int i = 0; i < SAMPLES; i++) {
+            long first = policy.backoff(1);
+            Assert.assertTrue(first >= 0 && first <= INITIAL_BACKOFF);
+            long second = policy.backoff(2);
+            Assert.assertTrue(second >= 0 && second <= 2 * INITIAL_BACKOFF);
+            long late = policy.backoff(RETRIES);
+            Assert.assertTrue(late >= 0 && late <= MAX_BACKOFF);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void shouldRejectNonPositiveMaxAttempts() {
+        new RetryPolicy().setMaxAttempts(0);
+    }
+}
@@ -0,0 +1,93 @@
+package pl.zdusza;
+
+import io.vertx.core.Future;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Arrays;
+
+@RunWith(VertxUnitRunner.class)
+public class ShardedDaoTest {
+    private static final String TEST_SUCCESSFUL_RESULT = "GreateSuccess";
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient firstClient;
+
+    @Mock
+    private SQLClient secondClient;
+
+    private ShardedDao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new ShardedDao(vertxContext.vertx(), Arrays.asList(firstClient, secondClient), 1, new DaoOptions());
+        for (SQLClient client : Arrays.asList(firstClient, secondClient)) {
+            DaoMocks.stubGetConnection(client, sqlConnection);
+        }
+        DaoMocks.stubSuccessfulCalls(sqlConnection);
+    }
+
+    @Test
+    public final void testShouldStayOnLocalPartitionWhileItHasFreeConnections(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), first);
+        dao.doInTransactionPLTZ(connection -> Future.succeededFuture(TEST_SUCCESSFUL_RESULT), second);
+        second.setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, first.result());
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            Mockito.verify(firstClient, Mockito.times(2)).getConnection(Mockito.any());
+            Mockito.verify(secondClient, Mockito.never()).getConnection(Mockito.any());
+            tc.assertEquals(0L, dao.getSteals());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldStealFromOtherPartitionWhenLocalIsExhausted(final TestContext tc) {
+        Async async = tc.async();
+        Future<String> firstHeld = Future.future();
+        Future<String> secondHeld = Future.future();
+        Future<String> thirdHeld = Future.future();
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        Future<String> third = Future.future();
+        dao.doInTransactionPLTZ(connection -> firstHeld, first);
+        dao.doInTransactionPLTZ(connection -> secondHeld, second);
+        dao.doInTransactionPLTZ(connection -> thirdHeld, third);
+        Mockito.verify(firstClient, Mockito.times(2)).getConnection(Mockito.any());
+        Mockito.verify(secondClient, Mockito.times(1)).getConnection(Mockito.any());
+        tc.assertEquals(1L, dao.getSteals());
+        third.setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(first.succeeded());
+            tc.assertTrue(second.succeeded());
+            tc.assertEquals(TEST_SUCCESSFUL_RESULT, v.result());
+            async.complete();
+        }));
+        firstHeld.complete(TEST_SUCCESSFUL_RESULT);
+        secondHeld.complete(TEST_SUCCESSFUL_RESULT);
+        thirdHeld.complete(TEST_SUCCESSFUL_RESULT);
+    }
+}
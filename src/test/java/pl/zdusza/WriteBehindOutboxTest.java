@@ -0,0 +1,163 @@
+package pl.zdusza;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class WriteBehindOutboxTest {
+    private static final String UPSERT = "INSERT INTO last_seen (id, seen) VALUES (?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET seen = excluded.seen";
+    private static final JsonArray FIRST = new JsonArray().add(1).add("2020-01-01");
+    private static final JsonArray SECOND = new JsonArray().add(1).add("2020-01-02");
+    private static final JsonArray OTHER = new JsonArray().add(2).add("2020-01-01");
+    private static final RuntimeException TEST_EXCEPTION_1 = new RuntimeException("Test exception 1");
+    private static final long FLUSH_INTERVAL = 10;
+    private static final long LONG_FLUSH_INTERVAL = 60_000;
+
+    @Rule
+    public RunTestOnContext vertxContext = new RunTestOnContext();
+
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SQLConnection sqlConnection;
+
+    @Mock
+    private SQLClient sqlClient;
+
+    private Dao dao;
+
+    @Before
+    public final void setUp() {
+        this.dao = new Dao(sqlClient);
+        DaoMocks.stubSuccessfulTransactions(sqlClient, sqlConnection);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<List<Integer>>>>getArgument(2)
+                    .handle(Future.succeededFuture(
+                            Collections.nCopies(invocation.<List<JsonArray>>getArgument(1).size(), 1)));
+            return null;
+        }).when(sqlConnection).batchWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private WriteBehindOutbox outbox(final WriteBehindOptions options) {
+        return new WriteBehindOutbox(vertxContext.vertx(), dao, UPSERT, options);
+    }
+
+    @Test
+    public final void testShouldMergeWritesOfSameKeyIntoOneFlush(final TestContext tc) {
+        Async async = tc.async();
+        WriteBehindOutbox outbox = outbox(new WriteBehindOptions().setFlushInterval(FLUSH_INTERVAL));
+        CompositeFuture.all(outbox.write(1, FIRST), outbox.write(1, SECOND), outbox.write(2, OTHER))
+                .setHandler(v -> tc.verify(v1 -> {
+                    tc.assertTrue(v.succeeded());
+                    tc.assertEquals(0, outbox.getPending());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).batchWithParams(ArgumentMatchers.eq(UPSERT),
+                            ArgumentMatchers.eq(Arrays.asList(SECOND, OTHER)), Mockito.any());
+                    Mockito.verify(sqlConnection, Mockito.times(1)).commit(Mockito.any());
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public final void testShouldCompleteReplacedWriteRightAway(final TestContext tc) {
+        WriteBehindOutbox outbox = outbox(new WriteBehindOptions().setFlushInterval(LONG_FLUSH_INTERVAL));
+        Future<Void> replaced = outbox.write(1, FIRST);
+        Future<Void> latest = outbox.write(1, SECOND);
+        tc.assertTrue(replaced.succeeded());
+        tc.assertFalse(latest.isComplete());
+        Mockito.verify(sqlClient, Mockito.never()).getConnection(Mockito.any());
+        outbox.close();
+        tc.assertTrue(latest.succeeded());
+    }
+
+    @Test
+    public final void testShouldFlushWhenBatchIsFull(final TestContext tc) {
+        Async async = tc.async();
+        WriteBehindOutbox outbox = outbox(new WriteBehindOptions()
+                .setFlushInterval(LONG_FLUSH_INTERVAL)
+                .setMaxBatchSize(2));
+        CompositeFuture.all(outbox.write(1, FIRST), outbox.write(2, OTHER)).setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.succeeded());
+            Mockito.verify(sqlConnection, Mockito.times(1)).batchWithParams(ArgumentMatchers.eq(UPSERT),
+                    ArgumentMatchers.eq(Arrays.asList(FIRST, OTHER)), Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldRejectNewKeysWhenFullAndFlushOnClose(final TestContext tc) {
+        Async async = tc.async();
+        WriteBehindOutbox outbox = outbox(new WriteBehindOptions()
+                .setFlushInterval(LONG_FLUSH_INTERVAL)
+                .setMaxPending(1));
+        Future<Void> first = outbox.write(1, FIRST);
+        Future<Void> rejected = outbox.write(2, OTHER);
+        Future<Void> merged = outbox.write(1, SECOND);
+        tc.assertTrue(rejected.failed());
+        tc.assertTrue(rejected.cause() instanceof OutboxFullException);
+        tc.assertEquals(1, ((OutboxFullException) rejected.cause()).getMaxPending());
+        tc.assertEquals(1, outbox.getPending());
+        CompositeFuture.all(first, merged, outbox.close()).setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.succeeded());
+            tc.assertTrue(outbox.write(1, FIRST).failed());
+            Mockito.verify(sqlConnection, Mockito.times(1)).batchWithParams(ArgumentMatchers.eq(UPSERT),
+                    ArgumentMatchers.eq(Collections.singletonList(SECOND)), Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldDropPendingWritesOnCloseWithoutFlush(final TestContext tc) {
+        Async async = tc.async();
+        WriteBehindOutbox outbox = outbox(new WriteBehindOptions()
+                .setFlushInterval(LONG_FLUSH_INTERVAL)
+                .setFlushOnClose(false));
+        Future<Void> write = outbox.write(1, FIRST);
+        outbox.close().setHandler(v -> tc.verify(v1 -> {
+            tc.assertTrue(v.succeeded());
+            tc.assertTrue(write.failed());
+            tc.assertEquals(0, outbox.getPending());
+            Mockito.verify(sqlClient, Mockito.never()).getConnection(Mockito.any());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public final void testShouldFailWritesOfFailedFlush(final TestContext tc) {
+        Async async = tc.async();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Handler<AsyncResult<List<Integer>>>>getArgument(2)
+                    .handle(Future.failedFuture(TEST_EXCEPTION_1));
+            return null;
+        }).when(sqlConnection).batchWithParams(Mockito.any(), Mockito.any(), Mockito.any());
+        WriteBehindOutbox outbox = outbox(new WriteBehindOptions().setFlushInterval(FLUSH_INTERVAL));
+        outbox.write(1, FIRST).setHandler(v -> tc.verify(v1 -> {
+            tc.assertEquals(TEST_EXCEPTION_1, v.cause());
+            Mockito.verify(sqlConnection, Mockito.times(1)).rollback(Mockito.any());
+            async.complete();
+        }));
+    }
+}
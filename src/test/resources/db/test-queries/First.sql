@@ -0,0 +1,2 @@
+SELECT 1
+FROM dual;
\ No newline at end of file